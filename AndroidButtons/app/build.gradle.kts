@@ -33,14 +33,21 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    testOptions {
+        // Robolectric-тестам нужны ресурсы и манифест приложения (разметка overlay, тема настроек)
+        unitTests.isIncludeAndroidResources = true
+    }
 }
 
 dependencies {
 
+    implementation(project(":core"))
     implementation(libs.appcompat)
     implementation(libs.material)
+    implementation(libs.recyclerview)
     implementation("com.github.mik3y:usb-serial-for-android:3.4.6")
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
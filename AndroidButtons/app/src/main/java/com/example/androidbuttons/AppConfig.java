@@ -0,0 +1,300 @@
+package com.example.androidbuttons;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Неизменяемый снимок настроек приложения. Актуальный снимок публикуется через одну volatile-ссылку
+ * ({@link #current()}), поэтому горячие пути (касания overlay, RX-кадры) читают обычные final-поля
+ * без обращения к SharedPreferences, поиска по ключу, блокировок и упаковки значений.
+ * <p>
+ * Изменения вносятся через {@link #edit()}: новый снимок публикуется сразу, а на диск попадает
+ * отложенно через {@link SettingsStore} — компактный бинарный файл, который пишется не чаще одного
+ * раза за период затишья. Так перетаскивание overlay или набор текста в полях настроек не
+ * переписывает XML SharedPreferences на каждое событие. Компоненты, которым нужно реагировать на
+ * изменения, подписываются через {@link #addListener(Listener)} и получают пару «старый/новый снимок».
+ */
+public final class AppConfig {
+
+    public interface Listener {
+        /**
+         * Вызывается после публикации нового снимка на потоке, который вызвал
+         * {@link Editor#apply()}.
+         */
+        void onConfigChanged(AppConfig previous, AppConfig current);
+    }
+
+    public static final String DEFAULT_TCP_HOST = "192.168.2.6";
+    public static final int DEFAULT_TCP_PORT = 9000;
+
+    public final String tcpHost;
+    public final int tcpPort;
+    public final int overlayX;
+    public final int overlayY;
+    public final float overlayScale;
+    /** true — overlay в режиме редактирования: окно можно двигать, смена состояния заблокирована. */
+    public final boolean overlayAllowModification;
+    /** Были ли координаты overlay когда-либо сохранены (первый запуск — нет). */
+    public final boolean overlayPositionSaved;
+    /** Окно успокоения команд управления, мс (см. CommandConflator). */
+    public final int commandSettleMs;
+    /**
+     * Локомотивы, для которых показываются дополнительные полосы (бит N — локомотив N), каждая в
+     * своём окне со своей позицией и масштабом.
+     */
+    public final int locoOverlayMask;
+    // Позиция и масштаб дополнительных полос, индекс = номер локомотива; масштаб 0 — ещё не задавались
+    private final int[] locoOverlayX;
+    private final int[] locoOverlayY;
+    private final float[] locoOverlayScale;
+
+    private static final AppConfig DEFAULTS = new AppConfig(DEFAULT_TCP_HOST, DEFAULT_TCP_PORT,
+            0, 0, 1.0f, true, false, (int) CommandConflator.DEFAULT_SETTLE_MS,
+            0, new int[StateBus.LOCO_COUNT + 1], new int[StateBus.LOCO_COUNT + 1], new float[StateBus.LOCO_COUNT + 1]);
+
+    /** Имя файла снимка во внутреннем каталоге приложения. */
+    static final String STORE_FILE_NAME = "settings.bin";
+
+    private static volatile AppConfig current = DEFAULTS;
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static volatile SettingsStore store;
+
+    AppConfig(String tcpHost, int tcpPort, int overlayX, int overlayY, float overlayScale,
+              boolean overlayAllowModification, boolean overlayPositionSaved, int commandSettleMs,
+              int locoOverlayMask, int[] locoOverlayX, int[] locoOverlayY, float[] locoOverlayScale) {
+        this.tcpHost = tcpHost;
+        this.tcpPort = tcpPort;
+        this.overlayX = overlayX;
+        this.overlayY = overlayY;
+        this.overlayScale = overlayScale;
+        this.overlayAllowModification = overlayAllowModification;
+        this.overlayPositionSaved = overlayPositionSaved;
+        this.commandSettleMs = commandSettleMs;
+        this.locoOverlayMask = locoOverlayMask;
+        // Массивы принадлежат снимку: вызывающий код передаёт свежие копии
+        this.locoOverlayX = locoOverlayX;
+        this.locoOverlayY = locoOverlayY;
+        this.locoOverlayScale = locoOverlayScale;
+    }
+
+    /** Показывается ли дополнительная полоса локомотива. */
+    public boolean isLocoOverlayShown(int loco) {
+        return loco >= 1 && loco <= StateBus.LOCO_COUNT && (locoOverlayMask & (1 << loco)) != 0;
+    }
+
+    public int locoOverlayX(int loco) {
+        return locoOverlayX[loco];
+    }
+
+    public int locoOverlayY(int loco) {
+        return locoOverlayY[loco];
+    }
+
+    /** Масштаб дополнительной полосы; 0 — геометрия ещё не сохранялась. */
+    public float locoOverlayScale(int loco) {
+        return locoOverlayScale[loco];
+    }
+
+    /**
+     * Текущий снимок настроек. До {@link #init(Context)} возвращает значения по умолчанию.
+     */
+    public static AppConfig current() {
+        return current;
+    }
+
+    /**
+     * Загружает снимок из файла хранилища. При первом запуске после обновления переносит значения
+     * из SharedPreferences и сохраняет их в новом формате. Повторные вызовы безопасны.
+     */
+    public static synchronized void init(Context context) {
+        if (store != null) return;
+        Context app = context.getApplicationContext();
+        store = new SettingsStore(new File(app.getFilesDir(), STORE_FILE_NAME));
+        AppConfig loaded = store.load();
+        if (loaded == null) {
+            loaded = read(app.getSharedPreferences(AppState.PREFS_NAME, Context.MODE_PRIVATE));
+            store.schedule(loaded);
+        }
+        publish(loaded);
+    }
+
+    /** Начинает изменение настроек; значения, которые не заданы, берутся из текущего снимка. */
+    public static Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * Немедленно и синхронно записывает отложенные изменения на вызывающем потоке. Вызывается при
+     * уходе экрана/сервиса, чтобы не потерять последнее изменение при остановке процесса.
+     */
+    public static void flush() {
+        SettingsStore s = store;
+        if (s != null) s.flush();
+    }
+
+    /**
+     * Последнее показанное состояние полосы (0 — неизвестно); рисуется сразу при быстром старте.
+     * Это состояние работы, а не настройка: в снимок оно не входит и слушателей не уведомляет.
+     */
+    public static int lastStripState() {
+        SettingsStore s = store;
+        return s != null ? s.lastStripState() : 0;
+    }
+
+    /**
+     * Запоминает показанное состояние полосы. Только поле в памяти хранилища: на диск оно попадает
+     * при {@link #flush()} (уход сервиса) или вместе со следующей записью настроек.
+     */
+    public static void rememberStripState(int state) {
+        SettingsStore s = store;
+        if (s != null) s.setLastStripState(state);
+    }
+
+    public static void addListener(Listener listener) {
+        if (listener == null) return;
+        listeners.addIfAbsent(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        if (listener == null) return;
+        listeners.remove(listener);
+    }
+
+    private static AppConfig read(SharedPreferences prefs) {
+        String host = prefs.getString(AppState.KEY_TCP_HOST, DEFAULT_TCP_HOST);
+        return new AppConfig(
+                host != null ? host.trim() : DEFAULT_TCP_HOST,
+                prefs.getInt(AppState.KEY_TCP_PORT, DEFAULT_TCP_PORT),
+                prefs.getInt(AppState.KEY_OVERLAY_X, 0),
+                prefs.getInt(AppState.KEY_OVERLAY_Y, 0),
+                prefs.getFloat(AppState.KEY_OVERLAY_SCALE, 1.0f),
+                prefs.getBoolean(AppState.KEY_OVERLAY_ALLOW_MODIFICATION, true),
+                prefs.contains(AppState.KEY_OVERLAY_X),
+                DEFAULTS.commandSettleMs,
+                DEFAULTS.locoOverlayMask,
+                DEFAULTS.locoOverlayX.clone(),
+                DEFAULTS.locoOverlayY.clone(),
+                DEFAULTS.locoOverlayScale.clone());
+    }
+
+    private static void publish(AppConfig next) {
+        AppConfig previous;
+        synchronized (AppConfig.class) {
+            previous = current;
+            if (next.sameAs(previous)) return;
+            current = next;
+        }
+        notifyListeners(previous, next);
+    }
+
+    private static void notifyListeners(AppConfig previous, AppConfig next) {
+        for (Listener listener : listeners) {
+            listener.onConfigChanged(previous, next);
+        }
+    }
+
+    private boolean sameAs(AppConfig other) {
+        return other != null
+                && tcpHost.equals(other.tcpHost)
+                && tcpPort == other.tcpPort
+                && overlayX == other.overlayX
+                && overlayY == other.overlayY
+                && Float.compare(overlayScale, other.overlayScale) == 0
+                && overlayAllowModification == other.overlayAllowModification
+                && overlayPositionSaved == other.overlayPositionSaved
+                && commandSettleMs == other.commandSettleMs
+                && locoOverlayMask == other.locoOverlayMask
+                && Arrays.equals(locoOverlayX, other.locoOverlayX)
+                && Arrays.equals(locoOverlayY, other.locoOverlayY)
+                && Arrays.equals(locoOverlayScale, other.locoOverlayScale);
+    }
+
+    /**
+     * Набор изменений поверх текущего снимка. {@link #apply()} сразу публикует новый снимок и
+     * ставит его в очередь отложенной записи.
+     */
+    public static final class Editor {
+        private String tcpHost;
+        private Integer tcpPort;
+        private Integer overlayX;
+        private Integer overlayY;
+        private Float overlayScale;
+        private Boolean overlayAllowModification;
+        private Integer commandSettleMs;
+        private int locoOverlaySet;
+        private int locoOverlayCleared;
+        private int locoGeometrySet;
+        private final int[] locoX = new int[StateBus.LOCO_COUNT + 1];
+        private final int[] locoY = new int[StateBus.LOCO_COUNT + 1];
+        private final float[] locoScale = new float[StateBus.LOCO_COUNT + 1];
+
+        private Editor() {}
+
+        public Editor setTcpHost(String host) { tcpHost = host != null ? host.trim() : null; return this; }
+        public Editor setTcpPort(int port) { tcpPort = port; return this; }
+        public Editor setOverlayX(int x) { overlayX = x; return this; }
+        public Editor setOverlayY(int y) { overlayY = y; return this; }
+        public Editor setOverlayScale(float scale) { overlayScale = scale; return this; }
+        public Editor setOverlayAllowModification(boolean allow) { overlayAllowModification = allow; return this; }
+        public Editor setCommandSettleMs(int ms) { commandSettleMs = Math.max(0, ms); return this; }
+
+        public Editor setLocoOverlayShown(int loco, boolean shown) {
+            if (loco < 1 || loco > StateBus.LOCO_COUNT) return this;
+            if (shown) {
+                locoOverlaySet |= 1 << loco;
+                locoOverlayCleared &= ~(1 << loco);
+            } else {
+                locoOverlayCleared |= 1 << loco;
+                locoOverlaySet &= ~(1 << loco);
+            }
+            return this;
+        }
+
+        public Editor setLocoOverlayGeometry(int loco, int x, int y, float scale) {
+            if (loco < 1 || loco > StateBus.LOCO_COUNT) return this;
+            locoGeometrySet |= 1 << loco;
+            locoX[loco] = x;
+            locoY[loco] = y;
+            locoScale[loco] = scale;
+            return this;
+        }
+
+        public void apply() {
+            AppConfig previous;
+            AppConfig next;
+            // Сборка и публикация под одной блокировкой: параллельные apply() не теряют изменений
+            // друг друга, а хранилище получает снимки в порядке публикации.
+            synchronized (AppConfig.class) {
+                previous = current;
+                int[] nextLocoX = previous.locoOverlayX.clone();
+                int[] nextLocoY = previous.locoOverlayY.clone();
+                float[] nextLocoScale = previous.locoOverlayScale.clone();
+                for (int loco = 1; loco <= StateBus.LOCO_COUNT; loco++) {
+                    if ((locoGeometrySet & (1 << loco)) == 0) continue;
+                    nextLocoX[loco] = locoX[loco];
+                    nextLocoY[loco] = locoY[loco];
+                    nextLocoScale[loco] = locoScale[loco];
+                }
+                next = new AppConfig(
+                        tcpHost != null ? tcpHost : previous.tcpHost,
+                        tcpPort != null ? tcpPort : previous.tcpPort,
+                        overlayX != null ? overlayX : previous.overlayX,
+                        overlayY != null ? overlayY : previous.overlayY,
+                        overlayScale != null ? overlayScale : previous.overlayScale,
+                        overlayAllowModification != null ? overlayAllowModification : previous.overlayAllowModification,
+                        previous.overlayPositionSaved || overlayX != null || overlayY != null,
+                        commandSettleMs != null ? commandSettleMs : previous.commandSettleMs,
+                        (previous.locoOverlayMask | locoOverlaySet) & ~locoOverlayCleared,
+                        nextLocoX, nextLocoY, nextLocoScale);
+                if (next.sameAs(previous)) return;
+                current = next;
+                if (store != null) store.schedule(next);
+            }
+            notifyListeners(previous, next);
+        }
+    }
+}
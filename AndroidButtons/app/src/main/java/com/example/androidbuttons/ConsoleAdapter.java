@@ -0,0 +1,120 @@
+package com.example.androidbuttons;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Адаптер виртуализированной консоли. RecyclerView привязывает только видимые строки из
+ * {@link ConsoleLog}, поэтому стоимость добавления не зависит от длины истории. Пока экран скрыт,
+ * уведомления RecyclerView не отправляются вовсе — при возврате выполняется одна полная перепривязка.
+ * <p>
+ * При активном фильтре адаптер показывает результат запроса к {@link ConsoleIndex}; новые строки
+ * проверяются по одной и дописываются в результат без повторного запроса.
+ */
+final class ConsoleAdapter extends RecyclerView.Adapter<ConsoleAdapter.LineHolder> {
+
+    static final class LineHolder extends RecyclerView.ViewHolder {
+        final TextView text;
+
+        LineHolder(@NonNull View itemView) {
+            super(itemView);
+            text = (TextView) itemView;
+        }
+    }
+
+    private final ConsoleLog log;
+    private boolean rendering = false;
+    private ConsoleIndex.Query filter = null;
+    private ConsoleIndex.SeqList filtered = null;
+
+    ConsoleAdapter(ConsoleLog log) {
+        this.log = log;
+    }
+
+    @NonNull
+    @Override
+    public LineHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View v = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_console_line, parent, false);
+        return new LineHolder(v);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull LineHolder holder, int position) {
+        int logPosition = filtered != null ? log.positionOf(filtered.get(position)) : position;
+        holder.text.setText(log.text(logPosition));
+        holder.text.setTextColor(log.color(logPosition));
+    }
+
+    @Override
+    public int getItemCount() {
+        if (!rendering) return 0;
+        return filtered != null ? filtered.size() : log.size();
+    }
+
+    /**
+     * Включает/выключает отрисовку. При выключении RecyclerView видит пустой список и не делает
+     * ни одного layout-прохода; при включении получает накопленное состояние одним уведомлением.
+     */
+    void setRendering(boolean enabled) {
+        if (rendering == enabled) return;
+        rendering = enabled;
+        log.takeEvictedCount();
+        notifyDataSetChanged();
+    }
+
+    boolean isRendering() {
+        return rendering;
+    }
+
+    /**
+     * Применяет фильтр (null или пустой запрос — показать всё). Выборка строится по индексу,
+     * текст журнала целиком не просматривается.
+     */
+    void setFilter(ConsoleIndex.Query query) {
+        if (query == null || query.isEmpty()) {
+            filter = null;
+            filtered = null;
+        } else {
+            filter = query;
+            filtered = log.index().query(log, query);
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Сообщает RecyclerView о пачке строк, добавленных в конец журнала. Вытесненные с начала строки
+     * передаются как удалённый диапазон, чтобы не перепривязывать весь экран.
+     */
+    void onLinesAppended(int appended) {
+        int evicted = log.takeEvictedCount();
+        if (appended <= 0) return;
+        if (filtered != null) {
+            onLinesAppendedFiltered(appended);
+            return;
+        }
+        if (!rendering) return;
+        if (appended >= log.capacity()) {
+            notifyDataSetChanged();
+            return;
+        }
+        if (evicted > 0) {
+            notifyItemRangeRemoved(0, evicted);
+        }
+        notifyItemRangeInserted(log.size() - appended, appended);
+    }
+
+    private void onLinesAppendedFiltered(int appended) {
+        int before = filtered.size();
+        int removed = log.index().extend(log, filter, filtered, appended);
+        if (!rendering) return;
+        int kept = before - removed;
+        int inserted = filtered.size() - kept;
+        if (removed > 0) notifyItemRangeRemoved(0, removed);
+        if (inserted > 0) notifyItemRangeInserted(kept, inserted);
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.androidbuttons;
+
+import java.util.Arrays;
+
+/**
+ * Инкрементальный индекс консоли для фильтров и поиска. На каждую добавленную строку пополняются
+ * списки номеров записей (posting lists): по локомотиву, направлению (TX/RX), ошибкам и по
+ * триграммам текста в нижнем регистре. Запрос перебирает только самый короткий из подходящих
+ * списков и проверяет остальные условия по тегам записи, поэтому текст журнала целиком не
+ * просматривается. Класс не потокобезопасен и обслуживается вместе с {@link ConsoleLog} на UI-потоке.
+ */
+final class ConsoleIndex {
+
+    /** Условия фильтрации консоли. Пустые поля означают «любое значение». */
+    static final class Query {
+        final int loco;          // 0 — любой
+        final int directionMask; // ConsoleLog.TAG_TX | ConsoleLog.TAG_RX, 0 — любое
+        final boolean errorsOnly;
+        final long sinceMs;      // 0 — без ограничения по времени
+        final String text;       // null/пусто — без поиска
+
+        Query(int loco, int directionMask, boolean errorsOnly, long sinceMs, String text) {
+            this.loco = loco;
+            this.directionMask = directionMask & (ConsoleLog.TAG_TX | ConsoleLog.TAG_RX);
+            this.errorsOnly = errorsOnly;
+            this.sinceMs = sinceMs;
+            this.text = text != null ? text.trim() : "";
+        }
+
+        boolean isEmpty() {
+            return loco <= 0 && directionMask == 0 && !errorsOnly && sinceMs <= 0 && text.isEmpty();
+        }
+    }
+
+    /**
+     * Отсортированный по возрастанию список номеров записей. Устаревшие номера отрезаются с начала
+     * сдвигом указателя, массив уплотняется, когда мёртвая часть становится больше живой.
+     */
+    static final class SeqList {
+        private int[] data = new int[8];
+        private int start = 0;
+        private int end = 0;
+
+        int size() {
+            return end - start;
+        }
+
+        int get(int i) {
+            return data[start + i];
+        }
+
+        int last() {
+            return end > start ? data[end - 1] : -1;
+        }
+
+        void add(int seq) {
+            if (end == data.length) {
+                if (start > data.length / 2) {
+                    System.arraycopy(data, start, data, 0, end - start);
+                    end -= start;
+                    start = 0;
+                } else {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+            }
+            data[end++] = seq;
+        }
+
+        /** Отбрасывает номера меньше minSeq; возвращает количество отброшенных. */
+        int trimBelow(int minSeq) {
+            int from = start;
+            start = lowerBoundIndex(minSeq);
+            return start - from;
+        }
+
+        /** Индекс (относительно начала списка) первого номера, не меньшего seq. */
+        int lowerBound(int seq) {
+            return lowerBoundIndex(seq) - start;
+        }
+
+        private int lowerBoundIndex(int seq) {
+            int lo = start;
+            int hi = end;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (data[mid] < seq) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    private final SeqList[] byLoco = new SeqList[ConsoleLog.TAG_LOCO_MASK + 1];
+    private final SeqList tx = new SeqList();
+    private final SeqList rx = new SeqList();
+    private final SeqList errors = new SeqList();
+
+    // Открытая адресация: триграмма (3 символа по 16 бит) -> список номеров
+    private long[] gramKeys = new long[1024];
+    private SeqList[] gramLists = new SeqList[1024];
+    private int gramCount = 0;
+    private int addsSinceSweep = 0;
+
+    ConsoleIndex() {
+        for (int i = 0; i < byLoco.length; i++) byLoco[i] = new SeqList();
+    }
+
+    /**
+     * Индексирует новую запись. minLiveSeq — номер самой старой живой записи журнала: по нему
+     * списки подрезаются, чтобы память индекса оставалась пропорциональной ёмкости журнала.
+     */
+    void add(int seq, String line, int tags, int minLiveSeq, int capacity) {
+        int loco = tags & ConsoleLog.TAG_LOCO_MASK;
+        if (loco > 0) appendTrimmed(byLoco[loco], seq, minLiveSeq);
+        if ((tags & ConsoleLog.TAG_TX) != 0) appendTrimmed(tx, seq, minLiveSeq);
+        if ((tags & ConsoleLog.TAG_RX) != 0) appendTrimmed(rx, seq, minLiveSeq);
+        if ((tags & ConsoleLog.TAG_ERROR) != 0) appendTrimmed(errors, seq, minLiveSeq);
+
+        int n = line.length();
+        for (int i = 0; i + 3 <= n; i++) {
+            long key = gramKey(line, i);
+            SeqList list = gramListFor(key, true);
+            // Повтор триграммы внутри одной строки индексируем один раз
+            if (list.last() != seq) appendTrimmed(list, seq, minLiveSeq);
+        }
+
+        // Раз в «оборот» журнала подрезаем все списки, в том числе давно не пополнявшиеся
+        if (++addsSinceSweep >= capacity) {
+            addsSinceSweep = 0;
+            sweep(minLiveSeq);
+        }
+    }
+
+    /**
+     * Выполняет запрос по живой части журнала. Результат — номера подходящих записей по возрастанию.
+     */
+    SeqList query(ConsoleLog log, Query q) {
+        SeqList result = new SeqList();
+        int from = log.firstSeq();
+        if (q.sinceMs > 0) from = Math.max(from, log.firstSeqAtOrAfter(q.sinceMs));
+        int end = log.endSeq();
+
+        SeqList driver = null;
+        if (q.loco > 0 && q.loco <= ConsoleLog.TAG_LOCO_MASK) driver = shorter(driver, byLoco[q.loco]);
+        if (q.directionMask == ConsoleLog.TAG_TX) driver = shorter(driver, tx);
+        if (q.directionMask == ConsoleLog.TAG_RX) driver = shorter(driver, rx);
+        if (q.errorsOnly) driver = shorter(driver, errors);
+        String text = q.text;
+        int textLen = text.length();
+        for (int i = 0; i + 3 <= textLen; i++) {
+            SeqList list = gramListFor(gramKey(text, i), false);
+            if (list == null) return result; // триграммы нет ни в одной строке — совпадений нет
+            driver = shorter(driver, list);
+        }
+
+        if (driver == null) {
+            // Нет подходящих списков (например, поиск из 1–2 символов) — проверяем диапазон напрямую
+            for (int seq = from; seq < end; seq++) {
+                if (matches(log, log.positionOf(seq), q)) result.add(seq);
+            }
+            return result;
+        }
+        for (int i = driver.lowerBound(from), n = driver.size(); i < n; i++) {
+            int seq = driver.get(i);
+            if (seq >= end) break;
+            if (matches(log, log.positionOf(seq), q)) result.add(seq);
+        }
+        return result;
+    }
+
+    /**
+     * Дополняет готовый результат запроса последними appended записями журнала: отрезает номера
+     * вытесненных записей и проверяет новые строки по одной, без повторного запроса.
+     *
+     * @return количество номеров, отрезанных с начала результата.
+     */
+    int extend(ConsoleLog log, Query q, SeqList result, int appended) {
+        int removed = result.trimBelow(log.firstSeq());
+        int end = log.endSeq();
+        for (int seq = Math.max(log.firstSeq(), end - appended); seq < end; seq++) {
+            if (matches(log, log.positionOf(seq), q)) result.add(seq);
+        }
+        return removed;
+    }
+
+    /**
+     * Проверяет одну живую запись на соответствие запросу. Используется для кандидатов из списков и
+     * для новых строк, пока фильтр активен.
+     */
+    boolean matches(ConsoleLog log, int position, Query q) {
+        int tags = log.tags(position);
+        if (q.loco > 0 && (tags & ConsoleLog.TAG_LOCO_MASK) != q.loco) return false;
+        if (q.directionMask != 0 && (tags & q.directionMask) == 0) return false;
+        if (q.errorsOnly && (tags & ConsoleLog.TAG_ERROR) == 0) return false;
+        if (q.sinceMs > 0 && log.time(position) < q.sinceMs) return false;
+        return q.text.isEmpty() || containsIgnoreCase(log.text(position), q.text);
+    }
+
+    private static SeqList shorter(SeqList current, SeqList candidate) {
+        return current == null || candidate.size() < current.size() ? candidate : current;
+    }
+
+    private static void appendTrimmed(SeqList list, int seq, int minLiveSeq) {
+        if (list.size() > 0 && list.get(0) < minLiveSeq) list.trimBelow(minLiveSeq);
+        list.add(seq);
+    }
+
+    private static boolean containsIgnoreCase(String haystack, String needle) {
+        int max = haystack.length() - needle.length();
+        for (int i = 0; i <= max; i++) {
+            if (haystack.regionMatches(true, i, needle, 0, needle.length())) return true;
+        }
+        return false;
+    }
+
+    private static long gramKey(String s, int i) {
+        long c0 = Character.toLowerCase(s.charAt(i));
+        long c1 = Character.toLowerCase(s.charAt(i + 1));
+        long c2 = Character.toLowerCase(s.charAt(i + 2));
+        return (c0 << 32) | (c1 << 16) | c2;
+    }
+
+    private SeqList gramListFor(long key, boolean create) {
+        int mask = gramKeys.length - 1;
+        int slot = mix(key) & mask;
+        while (gramLists[slot] != null) {
+            if (gramKeys[slot] == key) return gramLists[slot];
+            slot = (slot + 1) & mask;
+        }
+        if (!create) return null;
+        SeqList list = new SeqList();
+        gramKeys[slot] = key;
+        gramLists[slot] = list;
+        if (++gramCount * 2 > gramKeys.length) rehash(gramKeys.length * 2, Integer.MIN_VALUE);
+        return list;
+    }
+
+    /** Подрезает все списки и выбрасывает триграммы, у которых не осталось живых записей. */
+    private void sweep(int minLiveSeq) {
+        for (SeqList list : byLoco) list.trimBelow(minLiveSeq);
+        tx.trimBelow(minLiveSeq);
+        rx.trimBelow(minLiveSeq);
+        errors.trimBelow(minLiveSeq);
+        rehash(gramKeys.length, minLiveSeq);
+    }
+
+    private void rehash(int newCapacity, int minLiveSeq) {
+        long[] oldKeys = gramKeys;
+        SeqList[] oldLists = gramLists;
+        gramKeys = new long[newCapacity];
+        gramLists = new SeqList[newCapacity];
+        gramCount = 0;
+        int mask = newCapacity - 1;
+        for (int i = 0; i < oldLists.length; i++) {
+            SeqList list = oldLists[i];
+            if (list == null) continue;
+            if (minLiveSeq != Integer.MIN_VALUE) {
+                list.trimBelow(minLiveSeq);
+                if (list.size() == 0) continue;
+            }
+            int slot = mix(oldKeys[i]) & mask;
+            while (gramLists[slot] != null) slot = (slot + 1) & mask;
+            gramKeys[slot] = oldKeys[i];
+            gramLists[slot] = list;
+            gramCount++;
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.androidbuttons;
+
+/**
+ * Однопроходный разбор потока логов на строки для консоли настроек. Каждый символ входного блока
+ * просматривается ровно один раз, незавершённый «хвост» переносится в следующий вызов. Префиксы
+ * ([#TCP_TX#], [#TCP_RX#], [UART→], [UART←]) превращаются в цвет строки и отрезаются, заодно строка
+ * получает теги для индекса консоли (направление, номер локомотива, признак ошибки).
+ * Экземпляр не потокобезопасен: им пользуется только поток таймера консоли.
+ */
+final class ConsoleLineSplitter {
+
+    /** Приёмник разобранных строк. */
+    interface LineSink { void accept(String line, int color, int tags); }
+
+    /** Цвет строк без префикса — совпадает с цветом текста консоли в разметке. */
+    static final int COLOR_DEFAULT = 0xFF00E676;
+
+    private static final String PREFIX_UART_TX = "[UART→]";
+    private static final String PREFIX_UART_RX = "[UART←]";
+    private static final String PREFIX_TCP_TX = "[#TCP_TX#]";
+    private static final String PREFIX_TCP_RX = "[#TCP_RX#]";
+
+    private final StringBuilder remainder = new StringBuilder();
+
+    /**
+     * Разбирает очередной блок текста. Завершённые строки отдаются в sink, остаток без перевода
+     * строки сохраняется до следующего вызова.
+     *
+     * @return количество выданных строк.
+     */
+    int feed(CharSequence chunk, LineSink sink) {
+        int count = 0;
+        int start = 0;
+        int n = chunk.length();
+        for (int i = 0; i < n; i++) {
+            if (chunk.charAt(i) != '\n') continue;
+            String line;
+            if (remainder.length() > 0) {
+                remainder.append(chunk, start, i);
+                line = remainder.toString();
+                remainder.setLength(0);
+            } else {
+                line = chunk.subSequence(start, i).toString();
+            }
+            emit(line, sink);
+            count++;
+            start = i + 1;
+        }
+        if (start < n) remainder.append(chunk, start, n);
+        return count;
+    }
+
+    private static void emit(String line, LineSink sink) {
+        int color = COLOR_DEFAULT;
+        int removeLen = 0;
+        int tags = 0;
+        if (line.startsWith(PREFIX_TCP_TX)) {
+            color = 0xFF87CEFA; removeLen = PREFIX_TCP_TX.length(); tags = ConsoleLog.TAG_TX;
+        } else if (line.startsWith(PREFIX_TCP_RX)) {
+            color = 0xFF0000FF; removeLen = PREFIX_TCP_RX.length(); tags = ConsoleLog.TAG_RX;
+        } else if (line.startsWith(PREFIX_UART_TX)) {
+            color = 0xFF90EE90; removeLen = PREFIX_UART_TX.length(); tags = ConsoleLog.TAG_TX;
+        } else if (line.startsWith(PREFIX_UART_RX)) {
+            color = 0xFF006400; removeLen = PREFIX_UART_RX.length(); tags = ConsoleLog.TAG_RX;
+        }
+        String body = removeLen > 0 ? line.substring(removeLen) : line;
+        tags |= extractLoco(body);
+        if (containsIgnoreCase(body, "error") || containsIgnoreCase(body, "ошибк")) {
+            tags |= ConsoleLog.TAG_ERROR;
+        }
+        sink.accept(body, color, tags);
+    }
+
+    /**
+     * Номер локомотива из фрагмента вида «loco3» / «loco=3». Возвращает 0, если номер не найден или
+     * не помещается в ConsoleLog.TAG_LOCO_MASK.
+     */
+    private static int extractLoco(String line) {
+        int idx = line.indexOf("loco");
+        if (idx < 0) return 0;
+        int pos = idx + 4;
+        if (pos < line.length() && line.charAt(pos) == '=') pos++;
+        int value = 0;
+        boolean has = false;
+        while (pos < line.length()) {
+            char c = line.charAt(pos);
+            if (c < '0' || c > '9') break;
+            value = value * 10 + (c - '0');
+            has = true;
+            if (value > ConsoleLog.TAG_LOCO_MASK) return 0;
+            pos++;
+        }
+        return has ? value : 0;
+    }
+
+    private static boolean containsIgnoreCase(String haystack, String needle) {
+        int max = haystack.length() - needle.length();
+        for (int i = 0; i <= max; i++) {
+            if (haystack.regionMatches(true, i, needle, 0, needle.length())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Пачка строк одного тика таймера. Собирается на фоновом потоке и целиком передаётся на
+     * UI-поток, где копируется в журнал одним проходом и подтверждается одним уведомлением.
+     * Все строки пачки получают одно время — момент её сборки.
+     */
+    static final class Batch implements LineSink {
+        final long timeMs = System.currentTimeMillis();
+        String[] lines = new String[64];
+        int[] colors = new int[64];
+        int[] tags = new int[64];
+        int size = 0;
+
+        @Override
+        public void accept(String line, int color, int lineTags) {
+            if (size == lines.length) {
+                int cap = lines.length * 2;
+                lines = java.util.Arrays.copyOf(lines, cap);
+                colors = java.util.Arrays.copyOf(colors, cap);
+                tags = java.util.Arrays.copyOf(tags, cap);
+            }
+            lines[size] = line;
+            colors[size] = color;
+            tags[size] = lineTags;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.androidbuttons;
+
+/**
+ * Ограниченное хранилище строк консоли настроек. Строки лежат в кольцевом буфере фиксированной
+ * ёмкости: при переполнении самые старые записи вытесняются, поэтому память и стоимость отрисовки
+ * не растут в течение долгой сессии. Класс не потокобезопасен — все вызовы выполняются на UI-потоке.
+ * <p>
+ * Каждая запись получает возрастающий номер (seq), по которому её находит {@link ConsoleIndex}.
+ * Номер живой записи переводится в позицию буфера вычитанием {@link #firstSeq()}.
+ */
+final class ConsoleLog {
+
+    /** Жёсткий предел количества строк, которые держит консоль. */
+    static final int MAX_LINES = 50_000;
+
+    /** Номер локомотива, упомянутого в строке (0 — не найден). */
+    static final int TAG_LOCO_MASK = 0x0F;
+    /** Строка исходящей команды ([#TCP_TX#], [UART→]). */
+    static final int TAG_TX = 1 << 4;
+    /** Строка входящего кадра ([#TCP_RX#], [UART←]). */
+    static final int TAG_RX = 1 << 5;
+    /** Строка содержит сообщение об ошибке. */
+    static final int TAG_ERROR = 1 << 6;
+
+    private final String[] lines;
+    private final int[] colors;
+    private final int[] tags;
+    private final long[] times;
+    private final ConsoleIndex index = new ConsoleIndex();
+    private int head = 0;   // индекс самой старой строки
+    private int size = 0;
+    private int nextSeq = 0;
+    private int evictedInBatch = 0;
+
+    ConsoleLog(int capacity) {
+        int cap = Math.max(1, capacity);
+        this.lines = new String[cap];
+        this.colors = new int[cap];
+        this.tags = new int[cap];
+        this.times = new long[cap];
+    }
+
+    int capacity() {
+        return lines.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    ConsoleIndex index() {
+        return index;
+    }
+
+    /**
+     * Добавляет строку в конец и индексирует её. Если буфер заполнен, вытесняет самую старую
+     * запись и увеличивает счётчик вытесненных строк текущей пачки (см. {@link #takeEvictedCount()}).
+     */
+    void append(String line, int color, int lineTags, long timeMs) {
+        // Время в журнале не должно убывать (перевод часов) — иначе сломается поиск по времени
+        if (size > 0) timeMs = Math.max(timeMs, time(size - 1));
+        int cap = lines.length;
+        int tail = (head + size) % cap;
+        lines[tail] = line;
+        colors[tail] = color;
+        tags[tail] = lineTags;
+        times[tail] = timeMs;
+        if (size < cap) {
+            size++;
+        } else {
+            head = (head + 1) % cap;
+            evictedInBatch++;
+        }
+        int seq = nextSeq++;
+        index.add(seq, line, lineTags, firstSeq(), cap);
+    }
+
+    /** Номер самой старой живой записи. */
+    int firstSeq() {
+        return nextSeq - size;
+    }
+
+    /** Номер, который получит следующая запись. */
+    int endSeq() {
+        return nextSeq;
+    }
+
+    /** Позиция в буфере для живого номера записи. */
+    int positionOf(int seq) {
+        return seq - firstSeq();
+    }
+
+    /** Текст строки по логической позиции (0 — самая старая). */
+    String text(int position) {
+        return lines[(head + position) % lines.length];
+    }
+
+    /** Цвет строки по логической позиции (0 — самая старая). */
+    int color(int position) {
+        return colors[(head + position) % colors.length];
+    }
+
+    /** Теги строки (TAG_*) по логической позиции. */
+    int tags(int position) {
+        return tags[(head + position) % tags.length];
+    }
+
+    /** Время добавления строки (мс) по логической позиции. */
+    long time(int position) {
+        return times[(head + position) % times.length];
+    }
+
+    /**
+     * Номер первой записи, добавленной не раньше заданного момента. Время в буфере не убывает,
+     * поэтому используем двоичный поиск; если таких записей нет — возвращается {@link #endSeq()}.
+     */
+    int firstSeqAtOrAfter(long timeMs) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (time(mid) < timeMs) lo = mid + 1; else hi = mid;
+        }
+        return firstSeq() + lo;
+    }
+
+    /**
+     * Возвращает количество строк, вытесненных с начала буфера с момента предыдущего вызова, и
+     * сбрасывает счётчик. Адаптер использует значение, чтобы сообщить RecyclerView точный диапазон.
+     */
+    int takeEvictedCount() {
+        int n = evictedInBatch;
+        evictedInBatch = 0;
+        return n;
+    }
+}
@@ -1,8 +1,5 @@
 package com.example.androidbuttons;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
@@ -11,7 +8,6 @@ import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.PixelFormat;
-import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
@@ -25,11 +21,9 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.FrameLayout;
-import android.widget.ImageView;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
-import androidx.appcompat.content.res.AppCompatResources;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -41,6 +35,11 @@ public class FloatingOverlayService extends Service {
 
 	private static final String TAG = "FloatingOverlayService";
 	public static final String ACTION_RECREATE_OVERLAY = "com.example.androidbuttons.action.RECREATE_OVERLAY";
+	/**
+	 * Быстрый старт: сервис сразу прикрепляет overlay и рисует последнее известное состояние, и только
+	 * после этого запускает MainActivity (TCP, буферы, таймеры) в фоне.
+	 */
+	public static final String ACTION_FAST_BOOT = "com.example.androidbuttons.action.FAST_BOOT";
 	private static final String CHANNEL_ID = "overlay_probe_channel";
 	private static final int NOTIFICATION_ID = 1001;
 	private static final long HEARTBEAT_INTERVAL_MS = 3000L;
@@ -49,18 +48,41 @@ public class FloatingOverlayService extends Service {
 	private final Handler mainHandler = new Handler(Looper.getMainLooper());
 	private final AtomicBoolean overlayAttached = new AtomicBoolean(false);
 
-	// Listener для изменений preferences (ВАЖНО: хранить сильную ссылку, иначе GC удалит!)
-	private android.content.SharedPreferences.OnSharedPreferenceChangeListener preferenceListener;
+	// Реакция на смену режима редактирования: прозрачность окна
+	private final AppConfig.Listener configListener = this::onConfigChanged;
+	// Перемещение/масштаб окна применяются не чаще одного раза за кадр дисплея
+	private final FrameCoalescer layoutCoalescer = new FrameCoalescer(this::applyOverlayLayout);
+	private JankTracker jankTracker;
+
+	// Дополнительные полосы локомотивов (индекс = номер локомотива). Все окна получают состояния через
+	// одну подписку StateBus на все локомотивы и применяют раскладку одним callback кадра.
+	private final LocoStripWindow[] locoStrips = new LocoStripWindow[StateBus.LOCO_COUNT + 1];
+	private final FrameCoalescer locoStripCoalescer = new FrameCoalescer(this::applyLocoStripLayouts);
+	private boolean locoStripListenerRegistered = false;
+	private final StateBus.LocoStateListener locoStripListener = (loco, state) -> {
+		LocoStripWindow window = loco >= 1 && loco <= StateBus.LOCO_COUNT ? locoStrips[loco] : null;
+		if (window != null) window.showState(state);
+	};
+	private final LocoStripWindow.Host locoStripHost = new LocoStripWindow.Host() {
+		@Override
+		public void requestStripLayout() {
+			locoStripCoalescer.request();
+		}
+
+		@Override
+		public void onStripGeometryCommitted(int loco, int x, int y, float scale) {
+			locoStripCoalescer.flush();
+			AppConfig.edit().setLocoOverlayGeometry(loco, x, y, scale).apply();
+		}
+	};
 
 	private WindowManager windowManager;
 	private View overlayView;
 	private WindowManager.LayoutParams overlayParams;
 	private FrameLayout overlayRoot;
-	private ImageView overlayStateStrip;
-	private ImageView overlayCrossfadeView;
-	private ValueAnimator overlayAnimator;
+	private SignalStripView overlayStateStrip;
+	private StripCrossfader stripCrossfader;
 	private int currentState = 0;
-	private int lastResId = 0;
 
 	// Отложенная стартовая альфа до момента создания overlayView
 	private float pendingInitialAlpha = 1.0f;
@@ -82,6 +104,11 @@ public class FloatingOverlayService extends Service {
 	private float lastDistanceDuringScale = 0f;
 	private float smoothedScale = 1.0f;
 	private long lastScaleTs = 0L;
+	// Pinch выполняется трансформацией полосы внутри окна-«конверта»; окно меняется только в начале и в конце
+	private static final float PINCH_MAX_GROWTH = 2.0f;
+	private boolean pinchTransformActive = false;
+	private float pinchMaxScale = 5.0f;
+	private float pinchCornerRadiusPx = 0f;
 
 	// Режим жеста: запрещаем одновременное перемещение и масштабирование
 	private enum GestureMode { NONE, MOVE, SCALE }
@@ -92,25 +119,23 @@ public class FloatingOverlayService extends Service {
 	private boolean suppressMoveUntilUp = false; // after scaling, disallow move until full finger release
 
 	/**
-	 * Слушатель событий от основной активити. Каждый вызов транслируем на главный поток, так как
-	 * StateBus может прислать событие из произвольного потока.
+	 * Слушатель событий от основной активити. Регистрируется с исполнителем mainHandler::post и
+	 * политикой LATEST, поэтому вызывается уже на главном потоке и не чаще одного раза за проход
+	 * очереди — при пачке RX-кадров применяется только последнее состояние.
 	 */
-	private final StateBus.StripStateListener stripStateListener = state ->
-		mainHandler.post(() -> {
-			android.content.SharedPreferences p = getSharedPreferences(AppState.PREFS_NAME, MODE_PRIVATE);
-			boolean allowModification = p.getBoolean(AppState.KEY_OVERLAY_ALLOW_MODIFICATION, true);
-			if (allowModification) {
-				// Если уже что-то отображено — блокируем, иначе разрешаем первый paint
-				if (currentState != 0) {
-					Log.d(TAG, "stripStateListener: ignore state=" + state + " (edit mode, currentState=" + currentState + ")");
-					return;
-				} else {
-					Log.d(TAG, "stripStateListener: first paint allowed in edit mode state=" + state);
-				}
+	private final StateBus.StripStateListener stripStateListener = state -> {
+		if (AppConfig.current().overlayAllowModification) {
+			// Если уже что-то отображено — блокируем, иначе разрешаем первый paint
+			if (currentState != 0) {
+				Log.d(TAG, "stripStateListener: ignore state=" + state + " (edit mode, currentState=" + currentState + ")");
+				return;
+			} else {
+				Log.d(TAG, "stripStateListener: first paint allowed in edit mode state=" + state);
 			}
-			Log.d(TAG, "stripStateListener: applying state=" + state + " (current=" + currentState + ")");
-			updateOverlayState(state);
-		});
+		}
+		Log.d(TAG, "stripStateListener: applying state=" + state + " (current=" + currentState + ")");
+		updateOverlayState(state);
+	};
 
 	private final Runnable heartbeatRunnable = new Runnable() {
 		@Override
@@ -124,40 +149,20 @@ public class FloatingOverlayService extends Service {
 	@Override
 	public void onCreate() {
 		super.onCreate();
+		StartupTrace.mark(StartupTrace.SERVICE_CREATE);
 		Log.i(TAG, "onCreate");
 		ensureChannel();
 		windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
 		if (windowManager == null) {
 			Log.e(TAG, "WindowManager unavailable");
 		}
+		jankTracker = new JankTracker(windowManager != null ? windowManager.getDefaultDisplay().getRefreshRate() : 60f);
 
-		// Слушатель изменений SharedPreferences для автоматического применения прозрачности
-		android.content.SharedPreferences prefs = getSharedPreferences(AppState.PREFS_NAME, MODE_PRIVATE);
-		
-		// КРИТИЧЕСКИ ВАЖНО: сохраняем listener в поле класса, иначе GC удалит и он перестанет работать!
-		preferenceListener = (sharedPreferences, key) -> {
-			Log.e(TAG, "═══════ PREF CHANGED: key=" + key + " ═══════");
-			if (AppState.KEY_OVERLAY_ALLOW_MODIFICATION.equals(key)) {
-				boolean allow = sharedPreferences.getBoolean(AppState.KEY_OVERLAY_ALLOW_MODIFICATION, true);
-				float targetAlpha = allow ? 0.7f : 1.0f;
-				pendingInitialAlpha = targetAlpha;
-				
-				Log.e(TAG, "═══════ TARGET ALPHA=" + targetAlpha + " allow=" + allow + " overlayView=" + overlayView + " ═══════");
-				
-				// КРИТИЧЕСКИ ВАЖНО: применяем прозрачность немедленно через mainHandler
-				mainHandler.post(() -> {
-					if (overlayView != null) {
-						overlayView.setAlpha(targetAlpha);
-						Log.e(TAG, "✓✓✓ ALPHA CHANGED IMMEDIATELY -> " + targetAlpha + " (allow=" + allow + ")");
-					} else {
-						Log.e(TAG, "✗✗✗ overlayView is NULL, cannot change alpha!");
-					}
-				});
-			}
-		};
-		prefs.registerOnSharedPreferenceChangeListener(preferenceListener);
+		// Снимок настроек обновляется одним слушателем SharedPreferences внутри AppConfig
+		AppConfig.init(this);
+		AppConfig.addListener(configListener);
 		// Применяем стартовую альфу согласно текущему флагу
-		boolean allowAtStart = prefs.getBoolean(AppState.KEY_OVERLAY_ALLOW_MODIFICATION, true);
+		boolean allowAtStart = AppConfig.current().overlayAllowModification;
 		pendingInitialAlpha = allowAtStart ? 0.7f : 1.0f;
 		Log.d(TAG, "Initial overlay alpha based on allowModification=" + allowAtStart + " -> " + pendingInitialAlpha);
 		
@@ -202,7 +207,32 @@ public class FloatingOverlayService extends Service {
         };
         android.content.IntentFilter positionFilter = new android.content.IntentFilter("com.example.androidbuttons.APPLY_POSITION_NOW");
         registerReceiver(positionReceiver, positionFilter);
-    }	@Override
+    }
+
+	/**
+	 * Применяет прозрачность при смене режима редактирования. SharedPreferences уведомляет
+	 * слушателей на главном потоке, но при вызове из другого потока переходим на него сами.
+	 */
+	private void onConfigChanged(AppConfig previous, AppConfig config) {
+		if (previous.locoOverlayMask != config.locoOverlayMask) {
+			mainHandler.post(this::syncLocoStrips);
+		}
+		if (previous.overlayAllowModification == config.overlayAllowModification) return;
+		boolean allow = config.overlayAllowModification;
+		float targetAlpha = allow ? 0.7f : 1.0f;
+		pendingInitialAlpha = targetAlpha;
+		mainHandler.post(() -> {
+			if (overlayView != null) {
+				overlayView.setAlpha(targetAlpha);
+				Log.d(TAG, "Overlay alpha -> " + targetAlpha + " (allow=" + allow + ")");
+			}
+			for (LocoStripWindow window : locoStrips) {
+				if (window != null) window.setAlpha(targetAlpha);
+			}
+		});
+	}
+
+	@Override
 	public int onStartCommand(Intent intent, int flags, int startId) {
 		Log.i(TAG, "onStartCommand flags=" + flags + " startId=" + startId);
 		Notification notification = buildNotification();
@@ -214,16 +244,30 @@ public class FloatingOverlayService extends Service {
 				detachOverlay();
 				maybeAttachOverlay();
 			});
+		} else if (intent != null && ACTION_FAST_BOOT.equals(intent.getAction())) {
+			// Прикрепляем без отложенного post: полоса появляется раньше любой активити. Запуск
+			// MainActivity встаёт в очередь после первого прохода отрисовки окна.
+			maybeAttachOverlay();
+			mainHandler.post(this::launchMainActivity);
 		} else {
 			mainHandler.post(this::maybeAttachOverlay);
 		}
 		return START_STICKY;
 	}
 
+	@Override
+	public void onTaskRemoved(Intent rootIntent) {
+		// Задачу смахнули из «Недавних» — процесс может завершиться без onDestroy
+		AppConfig.flush();
+		super.onTaskRemoved(rootIntent);
+	}
+
 	@Override
 	public void onDestroy() {
 		Log.i(TAG, "onDestroy");
 		mainHandler.removeCallbacks(heartbeatRunnable);
+		AppConfig.removeListener(configListener);
+		AppConfig.flush();
 		detachOverlay();
 		super.onDestroy();
 	}
@@ -234,6 +278,21 @@ public class FloatingOverlayService extends Service {
 		return null;
 	}
 
+	/**
+	 * Запускает MainActivity в режиме «свернуть после старта» — при быстром старте это делает сервис,
+	 * а не LauncherActivity, чтобы активити не конкурировала с первой отрисовкой overlay.
+	 */
+	private void launchMainActivity() {
+		try {
+			Intent mainIntent = new Intent(this, MainActivity.class);
+			mainIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+			mainIntent.putExtra(MainActivity.EXTRA_HIDE_AFTER_BOOT, true);
+			startActivity(mainIntent);
+		} catch (RuntimeException ex) {
+			Log.e(TAG, "Failed to launch MainActivity", ex);
+		}
+	}
+
 	/**
 	 * Пытаемся прикрепить overlay к WindowManager. Метод безопасно выходить, если уже прикреплены
 	 * либо нет разрешения. Все операции оборачиваем в try/catch — WindowManager бросает исключения
@@ -259,15 +318,13 @@ public class FloatingOverlayService extends Service {
 			if (overlayRoot == null && overlayView instanceof FrameLayout) {
 				overlayRoot = (FrameLayout) overlayView;
 			}
-			overlayCrossfadeView = null;
-			overlayAnimator = null;
 		overlayParams = buildDefaultLayoutParams();
 		windowManager.addView(overlayView, overlayParams);
 		overlayAttached.set(true);
+		StartupTrace.mark(StartupTrace.OVERLAY_ATTACHED);
 
 		// КРИТИЧНО: перечитываем актуальное значение разрешения ПРЯМО СЕЙЧАС
-		android.content.SharedPreferences currentPrefs = getSharedPreferences(AppState.PREFS_NAME, MODE_PRIVATE);
-		boolean currentAllow = currentPrefs.getBoolean(AppState.KEY_OVERLAY_ALLOW_MODIFICATION, true);
+		boolean currentAllow = AppConfig.current().overlayAllowModification;
 		float actualAlpha = currentAllow ? 0.7f : 1.0f;
 		pendingInitialAlpha = actualAlpha;
 		
@@ -277,26 +334,28 @@ public class FloatingOverlayService extends Service {
 			// Однако при самом первом появлении overlay нам нужно что-то отрисовать (зелёный/1),
 			// иначе пользователь увидит пустую прозрачную полоску. Поэтому:
 			// 1. Проверяем есть ли уже глобально установленное состояние (StateBus.getCurrentState()).
-			// 2. Если нет (0 или <0) — публикуем зелёный (1) через StateBus.publishStripState(1).
+			// 2. Если нет (0 или <0) — берём последнее сохранённое состояние (AppConfig.lastStripState()),
+			//    а при его отсутствии зелёный (1), и публикуем через StateBus.publishStripState.
 			// 3. Независимо от режима редактирования выполняем одноразовый прямой вызов updateOverlayState(existing)
 			//    — stripStateListener пропустит первое обновление (currentState==0) и блокировку не наложит.
+			// Полоса должна быть найдена до первой отрисовки, иначе updateOverlayState её пропустит
+			setupOverlayInteractions();
 			int existing = StateBus.getCurrentState();
 			if (existing <= 0) {
-				StateBus.publishStripState(1); // фиксируем зелёный глобально и для других компонентов
-				existing = 1;
+				int persisted = AppConfig.lastStripState();
+				existing = persisted >= 1 && persisted <= SignalStripView.LAMP_COUNT ? persisted : 1;
+				StateBus.publishStripState(existing); // фиксируем состояние глобально и для других компонентов
 			}
 			updateOverlayState(existing);
 			
 			// Применяем скругления с текущим масштабом
-			android.content.SharedPreferences prefs = getSharedPreferences(AppState.PREFS_NAME, MODE_PRIVATE);
-			float currentScale = prefs.getFloat(AppState.KEY_OVERLAY_SCALE, 1.0f);
-			updateCornerRadius(currentScale);
+			updateCornerRadius(AppConfig.current().overlayScale);
 			
 			Log.i(TAG, "Overlay attached");
 
-			setupOverlayInteractions();
 			refreshOverlayStatus();
-			StateBus.registerStateListener(stripStateListener);
+			StateBus.registerStateListener(stripStateListener, mainHandler::post, StateBus.Conflation.LATEST);
+			syncLocoStrips();
 			mainHandler.removeCallbacks(heartbeatRunnable);
 			mainHandler.postDelayed(heartbeatRunnable, HEARTBEAT_INTERVAL_MS);
 		} catch (RuntimeException ex) {
@@ -316,12 +375,15 @@ public class FloatingOverlayService extends Service {
 		overlayStateStrip = overlayView.findViewById(R.id.overlayStateStrip);
 		if (overlayStateStrip != null) {
 			overlayStateStrip.setOnTouchListener(this::handleOverlayTouch);
+			stripCrossfader = new StripCrossfader(overlayStateStrip, STRIP_ANIM_DURATION);
+			stripCrossfader.setJankTracker(jankTracker);
 		}
 	}
 
 	/**
-	 * Обрабатывает касания по полосе и переводит их в условные зоны (1..5). Метод сейчас не
-	 * используется, но хранится как готовая реализация для будущих итераций.
+	 * Обрабатывает касания по полосе вне режима редактирования: ACTION_DOWN и каждое ACTION_MOVE
+	 * переводятся в условную зону (1..5), смена зоны публикуется как выбор overlay. Протяжка пальцем
+	 * даёт серию выборов; в кадры управления их сливает CommandConflator в MainActivity.
 	 */
 	private boolean handleStripTouch(MotionEvent event) {
 		if (event == null || overlayStateStrip == null) {
@@ -336,12 +398,9 @@ public class FloatingOverlayService extends Service {
 			return true;
 		}
 		float y = event.getY();
-		int zone = (int) (y / (height / 5f)) + 1;
-		if (zone < 1) zone = 1; else if (zone > 5) zone = 5;
-		// Перед сменой состояния всегда проверяем флаг
-		android.content.SharedPreferences p = getSharedPreferences(AppState.PREFS_NAME, MODE_PRIVATE);
-		boolean allowModification = p.getBoolean(AppState.KEY_OVERLAY_ALLOW_MODIFICATION, true);
-		if (allowModification) {
+		int zone = SignalStripView.zoneForY(y, height);
+		// Перед сменой состояния всегда проверяем флаг (снимок AppConfig, без обращения к prefs)
+		if (AppConfig.current().overlayAllowModification) {
 			Log.d(TAG, "State tap ignored (edit mode) zone=" + zone);
 			return true;
 		}
@@ -363,13 +422,12 @@ public class FloatingOverlayService extends Service {
 		}
 
 		// Проверяем, разрешено ли изменение окна
-		android.content.SharedPreferences prefs = getSharedPreferences(AppState.PREFS_NAME, MODE_PRIVATE);
-		boolean allowModification = prefs.getBoolean(AppState.KEY_OVERLAY_ALLOW_MODIFICATION, true);
+		AppConfig config = AppConfig.current();
+		boolean allowModification = config.overlayAllowModification;
 		
 		if (!allowModification) {
-			if (event.getAction() == MotionEvent.ACTION_UP) {
-				return handleStripTouch(event);
-			}
+			// Весь жест, включая ACTION_MOVE, идёт в выбор состояния: протяжка меняет зону на ходу
+			handleStripTouch(event);
 			return true;
 		} else {
 			// В режиме редактирования не вызываем смену состояния, но НЕ прерываем поток событий,
@@ -399,6 +457,8 @@ public class FloatingOverlayService extends Service {
 				gestureMode = GestureMode.MOVE;
 				isScaling = false;
 				didMoveDuringGesture = false; // reset
+				layoutCoalescer.resetStats();
+				jankTracker.begin(JankTracker.Interaction.DRAG);
 				// suppressMoveUntilUp уже очищён выше, если был
 				return true;
 
@@ -410,7 +470,7 @@ public class FloatingOverlayService extends Service {
 						isScaling = true;
 						suppressMoveUntilUp = true; // включаем блокировку последующих одиночных перемещений до полного отпускания
 						initialDistance = getDistance(event);
-						initialScale = prefs.getFloat(AppState.KEY_OVERLAY_SCALE, 1.0f);
+						initialScale = config.overlayScale;
 						lastDistanceDuringScale = initialDistance;
 						smoothedScale = initialScale;
 						lastScaleTs = System.nanoTime();
@@ -420,6 +480,7 @@ public class FloatingOverlayService extends Service {
 						initialY = overlayParams.y;
 						scalePivotX = (event.getRawX(0) + event.getRawX(1)) / 2f;
 						scalePivotY = (event.getRawY(0) + event.getRawY(1)) / 2f;
+						beginPinchTransform();
 						pauseAnimation();
 						animationPausedForScaling = true;
 						Log.d(TAG, "Scale start pivot=(" + scalePivotX + "," + scalePivotY + ") scale=" + initialScale);
@@ -439,7 +500,7 @@ public class FloatingOverlayService extends Service {
 							}
 						}
 						float targetScale = initialScale * (currentDistance / initialDistance);
-						targetScale = Math.max(0.1f, Math.min(5.0f, targetScale));
+						targetScale = Math.max(0.1f, Math.min(pinchMaxScale, targetScale));
 						long now = System.nanoTime();
 						float dtMs = (now - lastScaleTs) / 1_000_000f;
 						lastScaleTs = now;
@@ -449,17 +510,7 @@ public class FloatingOverlayService extends Service {
 							lastDistanceDuringScale = currentDistance;
 							return true;
 						}
-						int baseWidth = 100;
-						int baseHeight = 430;
-						int newWidth = Math.round(baseWidth * smoothedScale);
-						int newHeight = Math.round(baseHeight * smoothedScale);
-						float pivotRelativeX = scalePivotX - initialX;
-						float pivotRelativeY = scalePivotY - initialY;
-						float pivotRatioX = pivotRelativeX / initialWidth;
-						float pivotRatioY = pivotRelativeY / initialHeight;
-						int newX = Math.round(scalePivotX - (newWidth * pivotRatioX));
-						int newY = Math.round(scalePivotY - (newHeight * pivotRatioY));
-						applyScaleWithPosition(smoothedScale, newX, newY);
+						applyPinchTransform(smoothedScale);
 						lastDistanceDuringScale = currentDistance;
 					}
 				} else if (gestureMode == GestureMode.MOVE && pointerCount == 1 && !suppressMoveUntilUp) {
@@ -472,13 +523,14 @@ public class FloatingOverlayService extends Service {
 					}
 					overlayParams.x = newX;
 					overlayParams.y = newY;
-					try { windowManager.updateViewLayout(overlayView, overlayParams); } catch (Exception e) { Log.e(TAG, "Failed to update overlay position", e); }
+					layoutCoalescer.request();
 				}
 				return true;
 
 			case MotionEvent.ACTION_POINTER_UP:
 				if (gestureMode == GestureMode.SCALE) {
 					isScaling = false;
+					commitPinchTransform();
 					saveOverlayScale();
 					if (animationPausedForScaling) { resumeAnimation(); animationPausedForScaling = false; }
 					gestureMode = GestureMode.NONE;
@@ -487,24 +539,29 @@ public class FloatingOverlayService extends Service {
 				return true;
 
 			case MotionEvent.ACTION_UP:
+				// Окно должно встать в итоговую позицию до сохранения, не дожидаясь кадра
+				layoutCoalescer.flush();
+				Log.d(TAG, "Gesture layout: " + layoutCoalescer.stats());
 				if (gestureMode == GestureMode.SCALE) {
 					isScaling = false;
+					commitPinchTransform();
 					saveOverlayScale();
 					if (animationPausedForScaling) { resumeAnimation(); animationPausedForScaling = false; }
 				} else if (gestureMode == GestureMode.MOVE) {
 					// Всегда проверяем сохранённые префы и фактическую позицию — если отличаются, сохраняем.
-					android.content.SharedPreferences p = getSharedPreferences(AppState.PREFS_NAME, MODE_PRIVATE);
-					int storedX = eliminateTinyOffset(p.getInt(AppState.KEY_OVERLAY_X, overlayParams.x));
-					int storedY = p.getInt(AppState.KEY_OVERLAY_Y, overlayParams.y);
+					int storedX = config.overlayPositionSaved ? eliminateTinyOffset(config.overlayX) : eliminateTinyOffset(overlayParams.x);
+					int storedY = config.overlayPositionSaved ? config.overlayY : overlayParams.y;
 					boolean coordsChanged = (storedX != eliminateTinyOffset(overlayParams.x)) || (storedY != overlayParams.y);
 					float totalDelta = Math.abs(event.getRawX() - initialTouchX) + Math.abs(event.getRawY() - initialTouchY);
 					if (didMoveDuringGesture || coordsChanged || totalDelta >= dpToPx(2)) {
 						saveOverlayPosition();
+						reportJank(JankTracker.Interaction.DRAG);
 					} else {
 						Log.d(TAG, "ACTION_UP MOVE: no significant movement (" + totalDelta + ") — position unchanged");
 					}
 				}
 				gestureMode = GestureMode.NONE;
+				jankTracker.end(JankTracker.Interaction.DRAG);
 				if (pointerCount <= 1) {
 					if (suppressMoveUntilUp) {
 						Log.d(TAG, "All fingers up — clearing suppressMoveUntilUp");
@@ -514,6 +571,11 @@ public class FloatingOverlayService extends Service {
 				return true;
 
 			case MotionEvent.ACTION_CANCEL:
+				if (gestureMode == GestureMode.SCALE) {
+					commitPinchTransform();
+				}
+				layoutCoalescer.flush();
+				jankTracker.end(JankTracker.Interaction.DRAG);
 				isScaling = false;
 				gestureMode = GestureMode.NONE;
 				if (pointerCount <= 1) suppressMoveUntilUp = false;
@@ -523,6 +585,21 @@ public class FloatingOverlayService extends Service {
 		return false;
 	}
 
+	/**
+	 * Публикует сводку замера кадров по взаимодействию в logcat и в консоль экрана настроек.
+	 */
+	private void reportJank(JankTracker.Interaction interaction) {
+		if (jankTracker == null || jankTracker.frames(interaction) == 0) {
+			return;
+		}
+		reportJankLine(jankTracker.summary(interaction));
+	}
+
+	private void reportJankLine(String line) {
+		Log.i(TAG, "Jank: " + line);
+		AppState.consoleQueue.offer("Overlay " + line + "\n");
+	}
+
 	/**
 	 * Вычисляет расстояние между двумя пальцами для pinch-to-zoom
 	 */
@@ -532,7 +609,100 @@ public class FloatingOverlayService extends Service {
 		}
 		float x = event.getX(0) - event.getX(1);
 		float y = event.getY(0) - event.getY(1);
-		return (float) Math.sqrt(x * x + y * y);
+		// Координаты события локальны для полосы; во время pinch она масштабирована трансформацией,
+		// поэтому приводим расстояние к экранному
+		float viewScale = overlayStateStrip != null ? overlayStateStrip.getScaleX() : 1f;
+		return (float) Math.sqrt(x * x + y * y) * viewScale;
+	}
+
+	/**
+	 * Начало pinch: один раз расширяет окно до «конверта» — прямоугольника полосы при наибольшем
+	 * масштабе этого жеста вокруг точки pinch — и кладёт полосу внутрь с исходным размером на прежнее
+	 * место на экране. Дальше жест меняет только scale/pivot полосы (свойства RenderThread), без
+	 * перерасчёта окна. Скругление на время жеста переносится с окна на саму полосу.
+	 */
+	private void beginPinchTransform() {
+		if (overlayParams == null || overlayStateStrip == null || overlayRoot == null || initialWidth <= 0 || initialHeight <= 0) {
+			pinchMaxScale = 5.0f;
+			return;
+		}
+		int baseWidth = 100;
+		int baseHeight = 430;
+		pinchMaxScale = Math.min(5.0f, Math.max(initialScale, initialScale * PINCH_MAX_GROWTH));
+		float pivotRatioX = (scalePivotX - initialX) / initialWidth;
+		float pivotRatioY = (scalePivotY - initialY) / initialHeight;
+		int envWidth = Math.max(initialWidth, Math.round(baseWidth * pinchMaxScale));
+		int envHeight = Math.max(initialHeight, Math.round(baseHeight * pinchMaxScale));
+		int envX = Math.min(initialX, Math.round(scalePivotX - envWidth * pivotRatioX));
+		int envY = Math.min(initialY, Math.round(scalePivotY - envHeight * pivotRatioY));
+
+		pinchCornerRadiusPx = 6f * getResources().getDisplayMetrics().density * initialScale;
+		overlayStateStrip.setOutlineProvider(new android.view.ViewOutlineProvider() {
+			@Override
+			public void getOutline(View view, android.graphics.Outline outline) {
+				outline.setRoundRect(0, 0, view.getWidth(), view.getHeight(), pinchCornerRadiusPx);
+			}
+		});
+		overlayStateStrip.setClipToOutline(true);
+		overlayRoot.setBackground(null);
+		overlayRoot.setClipToOutline(false);
+		overlayStateStrip.setLayoutParams(new FrameLayout.LayoutParams(initialWidth, initialHeight, Gravity.TOP | Gravity.START));
+		overlayStateStrip.setTranslationX(initialX - envX);
+		overlayStateStrip.setTranslationY(initialY - envY);
+		overlayStateStrip.setPivotX(scalePivotX - initialX);
+		overlayStateStrip.setPivotY(scalePivotY - initialY);
+
+		overlayParams.width = envWidth;
+		overlayParams.height = envHeight;
+		overlayParams.x = envX;
+		overlayParams.y = envY;
+		layoutCoalescer.request();
+		layoutCoalescer.flush();
+		pinchTransformActive = true;
+		jankTracker.begin(JankTracker.Interaction.PINCH);
+		Log.d(TAG, "Pinch envelope " + envWidth + "x" + envHeight + " at (" + envX + "," + envY + ") maxScale=" + pinchMaxScale);
+	}
+
+	/** Промежуточный шаг pinch: только трансформация полосы, окно не трогаем. */
+	private void applyPinchTransform(float scale) {
+		if (!pinchTransformActive || overlayStateStrip == null) {
+			return;
+		}
+		float relative = scale / initialScale;
+		overlayStateStrip.setScaleX(relative);
+		overlayStateStrip.setScaleY(relative);
+	}
+
+	/**
+	 * Конец pinch: снимает трансформацию и одним изменением окна применяет итоговые размер и позицию.
+	 */
+	private void commitPinchTransform() {
+		if (!pinchTransformActive) {
+			return;
+		}
+		pinchTransformActive = false;
+		jankTracker.end(JankTracker.Interaction.PINCH);
+		reportJank(JankTracker.Interaction.PINCH);
+		if (overlayStateStrip != null) {
+			overlayStateStrip.setScaleX(1f);
+			overlayStateStrip.setScaleY(1f);
+			overlayStateStrip.setTranslationX(0f);
+			overlayStateStrip.setTranslationY(0f);
+			overlayStateStrip.setClipToOutline(false);
+			overlayStateStrip.setOutlineProvider(android.view.ViewOutlineProvider.BACKGROUND);
+			overlayStateStrip.setLayoutParams(new FrameLayout.LayoutParams(
+					FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT));
+		}
+		int baseWidth = 100;
+		int baseHeight = 430;
+		int newWidth = Math.round(baseWidth * smoothedScale);
+		int newHeight = Math.round(baseHeight * smoothedScale);
+		float pivotRatioX = (scalePivotX - initialX) / initialWidth;
+		float pivotRatioY = (scalePivotY - initialY) / initialHeight;
+		int newX = Math.round(scalePivotX - (newWidth * pivotRatioX));
+		int newY = Math.round(scalePivotY - (newHeight * pivotRatioY));
+		applyScaleWithPosition(smoothedScale, newX, newY);
+		layoutCoalescer.flush();
 	}
 
     /**
@@ -565,12 +735,8 @@ public class FloatingOverlayService extends Service {
         // Обновляем радиус скругления пропорционально масштабу
         updateCornerRadius(newScale);
 
-        try {
-            windowManager.updateViewLayout(overlayView, overlayParams);
-            // НЕ трогаем alpha — она управляется только preference listener!
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to apply scale", e);
-        }
+        // Ползунок настроек шлёт масштаб чаще кадров — применяем в ближайшем кадре
+        layoutCoalescer.request();
     }    /**
      * Применяет новый масштаб и позицию к overlay окну одновременно
      */
@@ -595,11 +761,22 @@ public class FloatingOverlayService extends Service {
         // Обновляем радиус скругления пропорционально масштабу
         updateCornerRadius(newScale);
 
+        // Во время pinch событий больше, чем кадров — применяем в ближайшем кадре
+        layoutCoalescer.request();
+    }
+
+    /**
+     * Применяет накопленные изменения overlayParams к окну. Вызывается FrameCoalescer раз в кадр.
+     */
+    private void applyOverlayLayout() {
+        if (overlayParams == null || windowManager == null || overlayView == null) {
+            return;
+        }
         try {
             windowManager.updateViewLayout(overlayView, overlayParams);
             // НЕ трогаем alpha — она управляется только preference listener!
         } catch (Exception e) {
-            Log.e(TAG, "Failed to apply scale with position", e);
+            Log.e(TAG, "Failed to update overlay layout", e);
         }
     }	/**
 	 * Обновляет радиус скругления углов overlay окна пропорционально масштабу.
@@ -630,7 +807,7 @@ public class FloatingOverlayService extends Service {
 	}
 
 	/**
-	 * Сохраняет текущий масштаб в SharedPreferences
+	 * Сохраняет текущий масштаб в AppConfig (запись на диск — отложенная, одна на период затишья)
 	 */
 	private void saveOverlayScale() {
 		if (overlayParams == null) {
@@ -644,10 +821,7 @@ public class FloatingOverlayService extends Service {
 		// Округляем до 2 знаков после запятой для точности
 		currentScale = Math.round(currentScale * 100f) / 100f;
 		
-		android.content.SharedPreferences prefs = getSharedPreferences(AppState.PREFS_NAME, MODE_PRIVATE);
-		prefs.edit()
-				.putFloat(AppState.KEY_OVERLAY_SCALE, currentScale)
-				.apply();
+		AppConfig.edit().setOverlayScale(currentScale).apply();
 
 		Log.d(TAG, "Overlay scale saved: " + currentScale + " (width=" + overlayParams.width + ")");
 		
@@ -657,10 +831,6 @@ public class FloatingOverlayService extends Service {
 		sendBroadcast(intent);
 	}
 
-	/**
-	 * Сохраняет текущую позицию overlay окна в SharedPreferences.
-	 * Размеры не сохраняются, так как вычисляются из scale.
-	 */
 	/**
 	 * Устанавливает прозрачность overlay окна
 	 */
@@ -672,12 +842,15 @@ public class FloatingOverlayService extends Service {
 		Log.d(TAG, "Overlay alpha set to: " + alpha);
 	}
 
+	/**
+	 * Сохраняет текущую позицию overlay окна в AppConfig.
+	 * Размеры не сохраняются, так как вычисляются из scale.
+	 */
 	private void saveOverlayPosition() {
 		if (overlayParams == null) {
 			return;
 		}
 
-		android.content.SharedPreferences prefs = getSharedPreferences(AppState.PREFS_NAME, MODE_PRIVATE);
 	int logicalX = overlayParams.x;
 	// Если применяли компенсацию (x отрицательный но близок к 0), вернём в префы 0.
 	if (logicalX < 0 && Math.abs(logicalX) <= computeLeftCompensation() + 2) {
@@ -685,9 +858,9 @@ public class FloatingOverlayService extends Service {
 	}
 	int clampedX = eliminateTinyOffset(logicalX);
 
-	prefs.edit()
-		.putInt(AppState.KEY_OVERLAY_X, clampedX)
-				.putInt(AppState.KEY_OVERLAY_Y, overlayParams.y)
+	AppConfig.edit()
+		.setOverlayX(clampedX)
+				.setOverlayY(overlayParams.y)
 				.apply();
 
 	Log.d(TAG, "Overlay position saved: x=" + clampedX + " y=" + overlayParams.y);
@@ -708,6 +881,79 @@ public class FloatingOverlayService extends Service {
 				getString(R.string.overlay_state_strip_cd_with_time, timestamp));
 	}
 
+	/**
+	 * Приводит набор дополнительных полос к AppConfig.locoOverlayMask: создаёт недостающие окна,
+	 * снимает лишние. Окно без сохранённой геометрии ставится правее основной полосы.
+	 */
+	private void syncLocoStrips() {
+		if (!overlayAttached.get() || windowManager == null) {
+			return;
+		}
+		AppConfig config = AppConfig.current();
+		float alpha = config.overlayAllowModification ? 0.7f : 1.0f;
+		int shown = 0;
+		for (int loco = 1; loco <= StateBus.LOCO_COUNT; loco++) {
+			LocoStripWindow window = locoStrips[loco];
+			if (!config.isLocoOverlayShown(loco)) {
+				if (window != null) {
+					window.detach(windowManager);
+					locoStrips[loco] = null;
+				}
+				continue;
+			}
+			shown++;
+			if (window != null) {
+				continue;
+			}
+			float scale = config.locoOverlayScale(loco);
+			int x = config.locoOverlayX(loco);
+			int y = config.locoOverlayY(loco);
+			if (scale <= 0f) {
+				scale = config.overlayScale;
+				int step = overlayParams != null ? overlayParams.width + dpToPx(8) : 0;
+				x = (overlayParams != null ? overlayParams.x : 0) + step * shown;
+				y = overlayParams != null ? overlayParams.y : 0;
+			}
+			window = new LocoStripWindow(this, loco, x, y, scale, STRIP_ANIM_DURATION, locoStripHost);
+			window.setJankTracker(jankTracker);
+			window.attach(windowManager, alpha);
+			locoStrips[loco] = window;
+			window.showState(StateBus.getLocoState(loco));
+			Log.i(TAG, "Loco strip attached loco=" + loco);
+		}
+		if (shown > 0 && !locoStripListenerRegistered) {
+			StateBus.registerLocoListener(0, locoStripListener, mainHandler::post, StateBus.Conflation.LATEST);
+			locoStripListenerRegistered = true;
+		} else if (shown == 0 && locoStripListenerRegistered) {
+			StateBus.unregisterLocoListener(locoStripListener);
+			locoStripListenerRegistered = false;
+		}
+	}
+
+	private void removeLocoStrips() {
+		if (locoStripListenerRegistered) {
+			StateBus.unregisterLocoListener(locoStripListener);
+			locoStripListenerRegistered = false;
+		}
+		locoStripCoalescer.cancel();
+		for (int loco = 1; loco <= StateBus.LOCO_COUNT; loco++) {
+			if (locoStrips[loco] != null) {
+				if (windowManager != null) locoStrips[loco].detach(windowManager);
+				locoStrips[loco] = null;
+			}
+		}
+	}
+
+	/** Вызывается FrameCoalescer раз в кадр: применяет раскладку всех изменённых окон сразу. */
+	private void applyLocoStripLayouts() {
+		if (windowManager == null) {
+			return;
+		}
+		for (LocoStripWindow window : locoStrips) {
+			if (window != null) window.applyLayoutIfDirty(windowManager);
+		}
+	}
+
 	/**
 	 * Снимает overlay и очищает все ссылки/обработчики, чтобы не допустить утечек WindowManager.
 	 */
@@ -726,14 +972,21 @@ public class FloatingOverlayService extends Service {
 			}
 		}
 		StateBus.unregisterStateListener(stripStateListener);
+		removeLocoStrips();
+		layoutCoalescer.cancel();
+		pinchTransformActive = false;
+		if (jankTracker != null) {
+			jankTracker.stop();
+			reportJank(JankTracker.Interaction.CROSSFADE);
+			reportJankLine(jankTracker.histogramSummary());
+		}
 		overlayAttached.set(false);
 		overlayView = null;
 		overlayParams = null;
         overlayRoot = null;
 		overlayStateStrip = null;
-        overlayCrossfadeView = null;
+		stripCrossfader = null;
 		currentState = 0;
-        lastResId = 0;
 	}
 
 	/**
@@ -775,7 +1028,7 @@ public class FloatingOverlayService extends Service {
 				: WindowManager.LayoutParams.TYPE_PHONE;
 
 		// Загружаем сохранённые параметры
-		android.content.SharedPreferences prefs = getSharedPreferences(AppState.PREFS_NAME, MODE_PRIVATE);
+		AppConfig config = AppConfig.current();
 		int defaultX = 0;  // РЕАЛЬНЫЙ 0!
 		int defaultY = 0;  // РЕАЛЬНЫЙ 0!
 		float defaultScale = 1.0f;
@@ -784,9 +1037,9 @@ public class FloatingOverlayService extends Service {
 		int baseWidth = 100;
 		int baseHeight = 430;
 		
-	int savedX = eliminateTinyOffset(prefs.getInt(AppState.KEY_OVERLAY_X, defaultX));
-	int savedY = prefs.getInt(AppState.KEY_OVERLAY_Y, defaultY);
-		float savedScale = prefs.getFloat(AppState.KEY_OVERLAY_SCALE, defaultScale);
+	int savedX = config.overlayPositionSaved ? eliminateTinyOffset(config.overlayX) : defaultX;
+	int savedY = config.overlayPositionSaved ? config.overlayY : defaultY;
+		float savedScale = config.overlayScale;
 
 		// Вычисляем финальные размеры с учётом масштаба
 		int finalWidth = Math.round(baseWidth * savedScale);
@@ -796,11 +1049,11 @@ public class FloatingOverlayService extends Service {
 				" Scale=" + savedScale + " (W=" + finalWidth + " H=" + finalHeight + ")");
 
 		// Если это первый запуск (значения не сохранены), сохраняем значения по умолчанию
-		if (!prefs.contains(AppState.KEY_OVERLAY_X)) {
-	    prefs.edit()
-		    .putInt(AppState.KEY_OVERLAY_X, defaultX)
-					.putInt(AppState.KEY_OVERLAY_Y, defaultY)
-					.putFloat(AppState.KEY_OVERLAY_SCALE, defaultScale)
+		if (!config.overlayPositionSaved) {
+	    AppConfig.edit()
+		    .setOverlayX(defaultX)
+					.setOverlayY(defaultY)
+					.setOverlayScale(defaultScale)
 					.apply();
 			Log.d(TAG, "Initialized default overlay position: x=" + defaultX + " y=" + defaultY +
 					" scale=" + defaultScale);
@@ -895,126 +1148,37 @@ public class FloatingOverlayService extends Service {
 	}
 
 	/**
-	 * Обновляет изображение полосы. Если состояние изменилось плавно — запускаем анимацию crossfade,
-	 * иначе просто подменяем drawable.
+	 * Обновляет полосу. Первое состояние показывается сразу, последующие — плавным переходом
+	 * через StripCrossfader; состояния, пришедшие во время перехода, сливаются в одну следующую цель.
 	 */
 	private void updateOverlayState(int state) {
-		if (overlayStateStrip == null) {
+		if (overlayStateStrip == null || stripCrossfader == null) {
 			Log.d(TAG, "updateOverlayState: view null, skip state=" + state);
 			return;
 		}
-		int resId = resolveDrawableForState(state);
-		if (resId == 0) {
-			Log.w(TAG, "updateOverlayState: unresolved drawable for state=" + state);
+		if (state < 1 || state > SignalStripView.LAMP_COUNT) {
+			Log.w(TAG, "updateOverlayState: unknown state=" + state);
 			return;
 		}
-		if (state == currentState && resId == lastResId && overlayStateStrip.getDrawable() != null) {
+		if (state == currentState) {
 			Log.d(TAG, "updateOverlayState: no-op (same state=" + state + ")");
 			return;
 		}
-		Drawable newDrawable = AppCompatResources.getDrawable(this, resId);
-		if (newDrawable == null) {
-			Log.w(TAG, "updateOverlayState: drawable load failed resId=" + resId + " state=" + state);
-			return;
-		}
-		if (overlayRoot == null || overlayStateStrip.getDrawable() == null || currentState == 0) {
-			cancelOverlayAnimator();
-			overlayStateStrip.setAlpha(1f);
-			overlayStateStrip.setImageDrawable(newDrawable);
-			Log.d(TAG, "updateOverlayState: applied immediately state=" + state + " resId=" + resId);
-		} else {
-			Log.d(TAG, "updateOverlayState: crossfade from=" + currentState + " to=" + state);
-			startStripCrossfade(newDrawable);
-		}
 		currentState = state;
-		lastResId = resId;
-	}
-
-	/**
-	 * Плавно перетягивает изображение полосы с помощью дополнительного ImageView поверх основного.
-	 * Анимация работает по ease-in-out кривой, чтобы сделать переход мягким.
-	 */
-	private void startStripCrossfade(Drawable newDrawable) {
-		cancelOverlayAnimator();
+		// Последнее показанное состояние — для мгновенной отрисовки при следующем старте. Только
+		// поле в памяти: без нового снимка настроек, слушателей и записи на диск (см. onDestroy)
+		AppConfig.rememberStripState(state);
 		if (overlayRoot == null) {
-			overlayStateStrip.setImageDrawable(newDrawable);
-			overlayStateStrip.setAlpha(1f);
-			return;
-		}
-		Drawable oldDrawable = overlayStateStrip.getDrawable();
-		if (oldDrawable == null) {
-			overlayStateStrip.setImageDrawable(newDrawable);
-			overlayStateStrip.setAlpha(1f);
-			return;
-		}
-		overlayStateStrip.setAlpha(1f);
-		overlayStateStrip.setImageDrawable(oldDrawable);
-
-		overlayCrossfadeView = new ImageView(this);
-		int width = overlayStateStrip.getWidth();
-		int height = overlayStateStrip.getHeight();
-		FrameLayout.LayoutParams lp = new FrameLayout.LayoutParams(
-				width > 0 ? width : FrameLayout.LayoutParams.MATCH_PARENT,
-				height > 0 ? height : FrameLayout.LayoutParams.MATCH_PARENT,
-				Gravity.TOP | Gravity.START);
-		overlayCrossfadeView.setLayoutParams(lp);
-		overlayCrossfadeView.setScaleType(overlayStateStrip.getScaleType());
-		overlayCrossfadeView.setAdjustViewBounds(overlayStateStrip.getAdjustViewBounds());
-		overlayCrossfadeView.setImageDrawable(newDrawable);
-		overlayCrossfadeView.setAlpha(0f);
-		overlayRoot.setClipToPadding(false);
-		overlayRoot.setClipChildren(false);
-		overlayRoot.addView(overlayCrossfadeView);
-
-		overlayAnimator = ValueAnimator.ofFloat(0f, 1f);
-		overlayAnimator.setDuration(STRIP_ANIM_DURATION);
-		overlayAnimator.addUpdateListener(anim -> {
-			float t = (float) anim.getAnimatedValue();
-			if (t <= 0.5f) {
-				float local = t / 0.5f;
-				float eased = local * local * (3f - 2f * local);
-				overlayCrossfadeView.setAlpha(eased);
-				overlayStateStrip.setAlpha(1f);
-			} else {
-				float local = (t - 0.5f) / 0.5f;
-				float eased = local * local * (3f - 2f * local);
-				overlayCrossfadeView.setAlpha(1f);
-				overlayStateStrip.setAlpha(1f - eased);
-			}
-		});
-		overlayAnimator.addListener(new AnimatorListenerAdapter() {
-			@Override
-			public void onAnimationEnd(Animator animation) {
-				finishStripCrossfade(newDrawable);
-			}
-
-			@Override
-			public void onAnimationCancel(Animator animation) {
-				finishStripCrossfade(newDrawable);
-			}
-		});
-		overlayAnimator.start();
-	}
-
-	/**
-	 * Завершает анимацию: переносит итоговый drawable на основной ImageView и убирает временное.
-	 */
-	private void finishStripCrossfade(Drawable finalDrawable) {
-		overlayStateStrip.setImageDrawable(finalDrawable);
-		overlayStateStrip.setAlpha(1f);
-		if (overlayRoot != null && overlayCrossfadeView != null) {
-			overlayRoot.removeView(overlayCrossfadeView);
+			stripCrossfader.show(state);
+		} else {
+			stripCrossfader.crossfadeTo(state);
 		}
-		overlayCrossfadeView = null;
-		overlayAnimator = null;
+		Log.d(TAG, "updateOverlayState: state=" + state + " " + stripCrossfader.stats());
 	}
 
 	private void cancelOverlayAnimator() {
-		if (overlayAnimator != null) {
-			overlayAnimator.cancel();
-		} else if (overlayRoot != null && overlayCrossfadeView != null) {
-			overlayRoot.removeView(overlayCrossfadeView);
-			overlayCrossfadeView = null;
+		if (stripCrossfader != null) {
+			stripCrossfader.cancel();
 		}
 	}
 
@@ -1022,8 +1186,8 @@ public class FloatingOverlayService extends Service {
 	 * Приостанавливает анимацию overlay окна
 	 */
 	private void pauseAnimation() {
-		if (overlayAnimator != null && overlayAnimator.isRunning()) {
-			overlayAnimator.pause();
+		if (stripCrossfader != null && stripCrossfader.isRunning()) {
+			stripCrossfader.pause();
 			Log.d(TAG, "Animation paused");
 		}
 	}
@@ -1032,26 +1196,9 @@ public class FloatingOverlayService extends Service {
 	 * Возобновляет анимацию overlay окна
 	 */
 	private void resumeAnimation() {
-		if (overlayAnimator != null && overlayAnimator.isPaused()) {
-			overlayAnimator.resume();
+		if (stripCrossfader != null) {
+			stripCrossfader.resume();
 			Log.d(TAG, "Animation resumed");
 		}
 	}
-
-	private int resolveDrawableForState(int state) {
-		switch (state) {
-			case 1:
-				return R.drawable.state_01_green;
-			case 2:
-				return R.drawable.state_02_yellow;
-			case 3:
-				return R.drawable.state_03_red_yellow;
-			case 4:
-				return R.drawable.state_04_red;
-			case 5:
-				return R.drawable.state_05_white;
-			default:
-				return 0;
-		}
-	}
 }
@@ -0,0 +1,77 @@
+package com.example.androidbuttons;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * Сводит частые запросы к одному действию на кадр дисплея. Касания приходят чаще частоты
+ * обновления экрана, поэтому вместо {@code updateViewLayout} на каждый ACTION_MOVE обработчик
+ * лишь меняет параметры окна и вызывает {@link #request()}, а само действие выполняется один раз
+ * в ближайшем callback {@link Choreographer} с последними значениями. Счётчики запросов и
+ * выполнений показывают, сколько перерасчётов раскладки сэкономлено. Только главный поток.
+ */
+final class FrameCoalescer implements Choreographer.FrameCallback {
+
+    private final Runnable action;
+    private Choreographer choreographer;
+    private boolean scheduled = false;
+
+    // Диагностика за текущее окно измерения (см. resetStats)
+    private int requests = 0;
+    private int runs = 0;
+    private long statsSinceMs = SystemClock.uptimeMillis();
+
+    FrameCoalescer(Runnable action) {
+        this.action = action;
+    }
+
+    /** Запрашивает выполнение действия в следующем кадре; повторные запросы до кадра сливаются. */
+    void request() {
+        requests++;
+        if (scheduled) return;
+        if (choreographer == null) choreographer = Choreographer.getInstance();
+        scheduled = true;
+        choreographer.postFrameCallback(this);
+    }
+
+    /** Выполняет отложенное действие немедленно (например, на ACTION_UP), если оно есть. */
+    void flush() {
+        if (!scheduled) return;
+        choreographer.removeFrameCallback(this);
+        scheduled = false;
+        run();
+    }
+
+    /** Отменяет отложенное действие. */
+    void cancel() {
+        if (!scheduled) return;
+        choreographer.removeFrameCallback(this);
+        scheduled = false;
+    }
+
+    void resetStats() {
+        requests = 0;
+        runs = 0;
+        statsSinceMs = SystemClock.uptimeMillis();
+    }
+
+    /** Запросы и фактические выполнения в секунду с момента {@link #resetStats()}. */
+    String stats() {
+        long elapsedMs = Math.max(1L, SystemClock.uptimeMillis() - statsSinceMs);
+        return "requests=" + requests + " (" + requests * 1000L / elapsedMs + "/s)"
+                + " runs=" + runs + " (" + runs * 1000L / elapsedMs + "/s)"
+                + " over " + elapsedMs + "ms";
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!scheduled) return;
+        scheduled = false;
+        run();
+    }
+
+    private void run() {
+        runs++;
+        action.run();
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.androidbuttons;
+
+import android.view.Choreographer;
+
+/**
+ * Замер длительности кадров overlay по callback {@link Choreographer}. Трекер работает только пока
+ * идёт хотя бы одно взаимодействие (переход полосы, перетаскивание, pinch), поэтому в покое не
+ * будит главный поток каждый кадр. Интервал между соседними кадрами попадает в гистограмму, а
+ * кадры, превысившие период обновления дисплея, считаются пропущенными и относятся к самому
+ * «тяжёлому» из активных взаимодействий. Один трекер обслуживает основную полосу и полосы
+ * локомотивов, поэтому активные взаимодействия считаются счётчиком: каждый begin закрывается своим
+ * end, и окончание одного перехода не обрывает замер другого. Только главный поток.
+ */
+final class JankTracker implements Choreographer.FrameCallback {
+
+    /** Тип взаимодействия; при нескольких одновременных кадр относится к последнему в списке. */
+    enum Interaction { CROSSFADE, DRAG, PINCH }
+
+    /** Верхние границы корзин гистограммы, мс; последняя корзина — всё, что длиннее. */
+    static final int[] BUCKET_LIMITS_MS = {8, 12, 17, 25, 33, 50, 100};
+
+    private final long frameIntervalNs;
+    private final long[] histogram = new long[BUCKET_LIMITS_MS.length + 1];
+    private final long[] frames = new long[Interaction.values().length];
+    private final long[] missed = new long[Interaction.values().length];
+    private final long[] worstNs = new long[Interaction.values().length];
+
+    private Choreographer choreographer;
+    // Число незакрытых begin по типу взаимодействия
+    private final int[] active = new int[Interaction.values().length];
+    private boolean posted = false;
+    private long lastFrameNs = 0;
+
+    /** @param refreshRate частота обновления дисплея, Гц (≤0 — считаем 60) */
+    JankTracker(float refreshRate) {
+        float hz = refreshRate > 1f ? refreshRate : 60f;
+        this.frameIntervalNs = (long) (1_000_000_000L / hz);
+    }
+
+    void begin(Interaction interaction) {
+        active[interaction.ordinal()]++;
+        if (posted) return;
+        if (choreographer == null) choreographer = Choreographer.getInstance();
+        lastFrameNs = 0;
+        posted = true;
+        choreographer.postFrameCallback(this);
+    }
+
+    void end(Interaction interaction) {
+        int i = interaction.ordinal();
+        if (active[i] > 0) active[i]--;
+    }
+
+    /** Останавливает замер (например, при снятии overlay); накопленная статистика сохраняется. */
+    void stop() {
+        java.util.Arrays.fill(active, 0);
+        if (posted && choreographer != null) choreographer.removeFrameCallback(this);
+        posted = false;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        posted = false;
+        Interaction current = current();
+        if (current == null) return;
+        if (lastFrameNs != 0) record(current, frameTimeNanos - lastFrameNs);
+        lastFrameNs = frameTimeNanos;
+        posted = true;
+        choreographer.postFrameCallback(this);
+    }
+
+    /** Сводка по одному взаимодействию для консоли, например «drag frames=120 missed=3 worst=48ms». */
+    String summary(Interaction interaction) {
+        int i = interaction.ordinal();
+        return interaction.name().toLowerCase(java.util.Locale.ROOT)
+                + " frames=" + frames[i]
+                + " missed=" + missed[i]
+                + " worst=" + worstNs[i] / 1_000_000 + "ms";
+    }
+
+    /** Общая гистограмма интервалов кадров: «≤8ms:…, ≤12ms:…, …, >100ms:…». */
+    String histogramSummary() {
+        StringBuilder sb = new StringBuilder("frame histogram");
+        for (int b = 0; b < histogram.length; b++) {
+            sb.append(b == 0 ? " " : ", ");
+            if (b < BUCKET_LIMITS_MS.length) {
+                sb.append("≤").append(BUCKET_LIMITS_MS[b]).append("ms:");
+            } else {
+                sb.append(">").append(BUCKET_LIMITS_MS[BUCKET_LIMITS_MS.length - 1]).append("ms:");
+            }
+            sb.append(histogram[b]);
+        }
+        return sb.toString();
+    }
+
+    long frames(Interaction interaction) {
+        return frames[interaction.ordinal()];
+    }
+
+    private Interaction current() {
+        Interaction[] all = Interaction.values();
+        for (int i = all.length - 1; i >= 0; i--) {
+            if (active[i] > 0) return all[i];
+        }
+        return null;
+    }
+
+    private void record(Interaction interaction, long deltaNs) {
+        int i = interaction.ordinal();
+        frames[i]++;
+        if (deltaNs > worstNs[i]) worstNs[i] = deltaNs;
+        // Интервал в N периодов означает N-1 пропущенный кадр; полпериода — запас на дрожание vsync
+        long periods = (deltaNs + frameIntervalNs / 2) / frameIntervalNs;
+        if (periods > 1) missed[i] += periods - 1;
+        long ms = deltaNs / 1_000_000;
+        int bucket = 0;
+        while (bucket < BUCKET_LIMITS_MS.length && ms > BUCKET_LIMITS_MS[bucket]) bucket++;
+        histogram[bucket]++;
+    }
+}
@@ -10,7 +10,8 @@ import android.provider.Settings;
 
 /**
  * Вспомогательная "пустая" активити, которая стартует сервис оверлея и сразу закрывается.
- * Показываем главный экран только если требуется запросить разрешение или запуск сделан из оверлея.
+ * Сервис запускается в режиме быстрого старта: сначала рисует полосу, затем сам поднимает
+ * MainActivity. Показываем главный экран только если требуется запросить разрешение.
  */
 public class LauncherActivity extends Activity {
 
@@ -23,10 +24,6 @@ public class LauncherActivity extends Activity {
         }
 
         startOverlayService();
-        Intent mainIntent = new Intent(this, MainActivity.class);
-        mainIntent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-        mainIntent.putExtra(MainActivity.EXTRA_HIDE_AFTER_BOOT, true);
-        startActivity(mainIntent);
         finish();
         overridePendingTransition(0, 0);
     }
@@ -50,6 +47,7 @@ public class LauncherActivity extends Activity {
     private void startOverlayService() {
         Context appCtx = getApplicationContext();
         Intent svcIntent = new Intent(appCtx, FloatingOverlayService.class);
+        svcIntent.setAction(FloatingOverlayService.ACTION_FAST_BOOT);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             appCtx.startForegroundService(svcIntent);
         } else {
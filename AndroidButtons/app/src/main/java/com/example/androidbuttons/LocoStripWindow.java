@@ -0,0 +1,180 @@
+package com.example.androidbuttons;
+
+import android.content.Context;
+import android.graphics.PixelFormat;
+import android.os.Build;
+import android.util.Log;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.WindowManager;
+
+/**
+ * Дополнительное окно overlay с полосой одного локомотива. Окно только отображает состояние: выбор
+ * состояния касанием остаётся за основной полосой выбранного локомотива. В режиме редактирования
+ * окно перемещается одним пальцем и масштабируется двумя; итоговая геометрия сохраняется через
+ * {@link Host}. Изменения раскладки не применяются сразу, а помечают окно «грязным» — сервис
+ * применяет все такие окна одним callback кадра. Только главный поток.
+ */
+final class LocoStripWindow {
+
+    /** Сервис, которому принадлежат окна. */
+    interface Host {
+        /** Запрашивает применение раскладки «грязных» окон в ближайшем кадре. */
+        void requestStripLayout();
+
+        /** Жест завершён — сохранить позицию и масштаб окна. */
+        void onStripGeometryCommitted(int loco, int x, int y, float scale);
+    }
+
+    private static final String TAG = "LocoStripWindow";
+
+    private static final int BASE_WIDTH = 100;
+    private static final int BASE_HEIGHT = 430;
+    private static final float MIN_SCALE = 0.1f;
+    private static final float MAX_SCALE = 5.0f;
+
+    final int loco;
+    private final Host host;
+    private final SignalStripView strip;
+    private final StripCrossfader crossfader;
+    private final WindowManager.LayoutParams params;
+    private float scale;
+    private boolean attached = false;
+    private boolean layoutDirty = false;
+
+    // Жест редактирования
+    private float touchStartX;
+    private float touchStartY;
+    private int startX;
+    private int startY;
+    private float pinchStartDistance = 0f;
+    private float pinchStartScale;
+
+    LocoStripWindow(Context context, int loco, int x, int y, float scale, long crossfadeMs, Host host) {
+        this.loco = loco;
+        this.host = host;
+        this.scale = clampScale(scale);
+        this.strip = new SignalStripView(context);
+        this.strip.setContentDescription("Loco" + loco);
+        this.strip.setOnTouchListener(this::onTouch);
+        this.crossfader = new StripCrossfader(strip, crossfadeMs);
+        int layoutType = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
+                : WindowManager.LayoutParams.TYPE_PHONE;
+        this.params = new WindowManager.LayoutParams(
+                Math.round(BASE_WIDTH * this.scale),
+                Math.round(BASE_HEIGHT * this.scale),
+                layoutType,
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                        | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN
+                        | WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS,
+                PixelFormat.TRANSLUCENT);
+        this.params.gravity = Gravity.LEFT | Gravity.TOP;
+        this.params.x = x;
+        this.params.y = y;
+        this.params.setTitle("LocoStrip" + loco);
+    }
+
+    void attach(WindowManager windowManager, float alpha) {
+        if (attached) return;
+        try {
+            strip.setAlpha(alpha);
+            windowManager.addView(strip, params);
+            attached = true;
+        } catch (RuntimeException ex) {
+            Log.e(TAG, "Failed to attach strip for loco " + loco, ex);
+        }
+    }
+
+    void detach(WindowManager windowManager) {
+        if (!attached) return;
+        crossfader.cancel();
+        try {
+            windowManager.removeViewImmediate(strip);
+        } catch (IllegalArgumentException ex) {
+            Log.w(TAG, "Strip for loco " + loco + " already removed", ex);
+        }
+        attached = false;
+        layoutDirty = false;
+    }
+
+    /** Показывает состояние локомотива; первое — сразу, последующие — плавным переходом. */
+    void showState(int state) {
+        if (state < 1 || state > SignalStripView.LAMP_COUNT) return;
+        crossfader.crossfadeTo(state);
+    }
+
+    void setAlpha(float alpha) {
+        strip.setAlpha(alpha);
+    }
+
+    void setJankTracker(JankTracker tracker) {
+        crossfader.setJankTracker(tracker);
+    }
+
+    /** Применяет отложенное изменение позиции/размера, если оно есть. */
+    void applyLayoutIfDirty(WindowManager windowManager) {
+        if (!layoutDirty || !attached) return;
+        layoutDirty = false;
+        try {
+            windowManager.updateViewLayout(strip, params);
+        } catch (RuntimeException ex) {
+            Log.e(TAG, "Failed to update strip layout for loco " + loco, ex);
+        }
+    }
+
+    private boolean onTouch(View view, MotionEvent event) {
+        if (!AppConfig.current().overlayAllowModification) {
+            return true;
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                touchStartX = event.getRawX();
+                touchStartY = event.getRawY();
+                startX = params.x;
+                startY = params.y;
+                pinchStartDistance = 0f;
+                return true;
+            case MotionEvent.ACTION_POINTER_DOWN:
+                if (event.getPointerCount() == 2) {
+                    pinchStartDistance = distance(event);
+                    pinchStartScale = scale;
+                }
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (pinchStartDistance > 0f && event.getPointerCount() >= 2) {
+                    // Локальные координаты обоих пальцев сдвигаются вместе с окном, расстояние — нет
+                    scale = clampScale(pinchStartScale * distance(event) / pinchStartDistance);
+                    params.width = Math.round(BASE_WIDTH * scale);
+                    params.height = Math.round(BASE_HEIGHT * scale);
+                } else if (pinchStartDistance == 0f) {
+                    params.x = Math.round(startX + event.getRawX() - touchStartX);
+                    params.y = Math.round(startY + event.getRawY() - touchStartY);
+                } else {
+                    return true;
+                }
+                layoutDirty = true;
+                host.requestStripLayout();
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                host.onStripGeometryCommitted(loco, params.x, params.y, scale);
+                pinchStartDistance = 0f;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    private static float distance(MotionEvent event) {
+        float dx = event.getX(0) - event.getX(1);
+        float dy = event.getY(0) - event.getY(1);
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static float clampScale(float value) {
+        if (value <= 0f) return 1.0f;
+        return Math.max(MIN_SCALE, Math.min(MAX_SCALE, value));
+    }
+}
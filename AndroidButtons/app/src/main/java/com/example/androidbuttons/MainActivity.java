@@ -4,7 +4,6 @@ import android.app.PendingIntent;
 import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -29,11 +28,15 @@ public class MainActivity extends AppCompatActivity {
     private static final int REQUEST_OVERLAY_PERMISSION = 1001;
 
     private TcpManager tcpManager;
+    // Сливает выбор в overlay в команды: протяжка по полосе не заваливает контроллер кадрами
+    private CommandConflator commandConflator;
+    // Связывает RX с ожидающими эха командами: старое состояние не обгоняет касание
+    private final CommandEchoFilter echoFilter = new CommandEchoFilter();
+    // Копия снимка для публикации; только поток чтения TCP
+    private final int[] snapshotToPublish = new int[StateBus.LOCO_COUNT];
     private DataBuffer uiBuffer;
-    private SharedPreferences prefs;
     private ActivityResultLauncher<Intent> settingsLauncher;
     private boolean overlayPermissionRequested = false;
-    private int currentState = 0;
     private boolean settingsLaunched = false;
     private java.util.Timer tcpStatusTimer;
 
@@ -41,19 +44,16 @@ public class MainActivity extends AppCompatActivity {
      * Слушатель, которым overlay-сервис сообщает о выборе состояния пользователем. Все действия
      * выполняем на UI-потоке, чтобы гарантировать корректное взаимодействие с виджетами/менеджерами.
      */
-    private final StateBus.OverlaySelectionListener overlaySelectionListener = state ->
-        runOnUiThread(() -> handleOverlaySelection(state));
+    private final StateBus.OverlaySelectionListener overlaySelectionListener = (state, version) ->
+        runOnUiThread(() -> handleOverlaySelection(state, version));
 
-    private final SharedPreferences.OnSharedPreferenceChangeListener prefListener = (sharedPrefs, key) -> {
-        if (sharedPrefs == null || key == null) {
-            return;
+    private final AppConfig.Listener configListener = (previous, config) -> {
+        if (previous.commandSettleMs != config.commandSettleMs) {
+            commandConflator.setSettleWindowMs(config.commandSettleMs);
         }
-        if (AppState.KEY_TCP_HOST.equals(key) || AppState.KEY_TCP_PORT.equals(key)) {
-            String host = sharedPrefs.getString(AppState.KEY_TCP_HOST, "192.168.2.6");
-            int port = sharedPrefs.getInt(AppState.KEY_TCP_PORT, 9000);
-            if (host != null) {
-                host = host.trim();
-            }
+        if (!previous.tcpHost.equals(config.tcpHost) || previous.tcpPort != config.tcpPort) {
+            String host = config.tcpHost;
+            int port = config.tcpPort;
             tcpManager.disableAutoConnect();
             tcpManager.disconnect();
             tcpManager.enableAutoConnect(host, port);
@@ -66,6 +66,7 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupTrace.mark(StartupTrace.MAIN_ACTIVITY_CREATE);
 
         // Launcher для открытия SettingsActivity. После возврата сворачиваем главную активити,
         // чтобы повторно попасть сюда только через иконку или системное «Недавние».
@@ -82,7 +83,7 @@ public class MainActivity extends AppCompatActivity {
         uiBuffer = new DataBuffer(256, data -> AppState.consoleQueue.offer(data));
 
         // Инициализация TCP-менеджера. Колбэки приводим к UI-потоку, чтобы обновлять глобальные флаги
-        // и лог. Основная логика — реагировать только на сообщения, относящиеся к выбранному локомотиву.
+        // и лог. Состояния всех локомотивов попадают в таблицу StateBus, а на полосу — только выбранный.
         tcpManager = new TcpManager(
                 () -> runOnUiThread(() -> {
                     AppState.tcpConnecting = true;
@@ -91,35 +92,8 @@ public class MainActivity extends AppCompatActivity {
                     AppState.tcpConnecting = false;
                 }),
                 data -> {
-                    if (data == null || data.isEmpty()) {
-                        return;
-                    }
-                    String[] lines = data.split("\n");
-                    int locoTarget = AppState.selectedLoco.get();
-                    for (String line : lines) {
-                        if (line == null) {
-                            continue;
-                        }
-                        String ln = line.trim();
-                        if (ln.isEmpty()) {
-                            continue;
-                        }
-                        int locoVal = extractDecimal(ln, "loco=");
-                        if (locoVal <= 0 || locoVal != locoTarget) {
-                            continue;
-                        }
-                        int stateVal = extractDecimal(ln, "state=");
-                        if (stateVal < 1 || stateVal > 6) {
-                            continue;
-                        }
-
-                        uiBuffer.offer("[#TCP_RX#]" + "Rx: loco" + locoVal + " -> state" + stateVal + "\n");
-
-                        final int stateCopy = stateVal;
-                        runOnUiThread(() -> {
-                            updateStateFromExternal(stateCopy);
-                        });
-                    }
+                    // Кадры состояния приходят через RxFrameListener (см. onRxStateFrame), текстом
+                    // TcpManager их отдаёт, только пока слушатель не задан
                 },
                 error -> {
                     // suppress UI noise
@@ -129,22 +103,45 @@ public class MainActivity extends AppCompatActivity {
                     AppState.tcpConnected = connected;
                     AppState.tcpReachable = connected;
                     Log.d("MainActivity", "TCP status changed: " + status + " -> connected=" + connected);
+                    if (!connected && tcpManager != null) {
+                        // Неизвестные и отвергнутые кадры за сессию — для разбора проблем с прошивкой
+                        Log.i("MainActivity", "RX frames: " + tcpManager.rxStats()
+                                + " stale=" + echoFilter.staleDropped());
+                        Log.i("MainActivity", "TX outbox: " + tcpManager.outboxStats());
+                    }
                 })
         );
 
 
 
 
-        prefs = getSharedPreferences(AppState.PREFS_NAME, MODE_PRIVATE);
-        prefs.registerOnSharedPreferenceChangeListener(prefListener);
-        String initHost = prefs.getString(AppState.KEY_TCP_HOST, "192.168.2.6");
-        int initPort = prefs.getInt(AppState.KEY_TCP_PORT, 9000);
-        tcpManager.enableAutoConnect(initHost, initPort);
-        
-        // Устанавливаем начальное состояние = 1 (зелёный светофор) при запуске
-        updateStateFromExternal(1);
-        StateBus.publishOverlaySelection(1);
-        Log.d("MainActivity", "Initial state set to 1 (green)");
+        tcpManager.setSnapshotListener(this::applyStateSnapshot);
+        tcpManager.setRxFrameListener(new TcpManager.RxFrameListener() {
+            @Override
+            public void onStateFrame(int loco, int state) {
+                onRxStateFrame(loco, state);
+            }
+
+            @Override
+            public void onAckFrame(int loco, int state) {
+                // Подтверждение команды: следующие кадры локомотива отправлены железом после неё
+                echoFilter.onAck(loco, state);
+            }
+
+            @Override
+            public void onTelemetryFrame(byte[] buf, int off, int len) {
+                // Телеметрия в консоль не выводится
+            }
+        });
+
+        AppConfig.init(this);
+        AppConfig config = AppConfig.current();
+        commandConflator = new CommandConflator(this::sendControlFrame);
+        commandConflator.setSettleWindowMs(config.commandSettleMs);
+        AppConfig.addListener(configListener);
+        // Начальное состояние не навязываем: до ответа на запрос снимка полоса показывает
+        // последнее сохранённое, а сразу после подключения — фактическое состояние железа
+        tcpManager.enableAutoConnect(config.tcpHost, config.tcpPort);
 
     // Стартовая быстрая проверка (фоновая)
     runOffUi(() -> performTcpHealthCheck("init"));
@@ -219,15 +216,10 @@ public class MainActivity extends AppCompatActivity {
             tcpStatusTimer = null;
         }
         
-        tcpManager.disableAutoConnect();
-        tcpManager.disconnect();
-        if (prefs != null) {
-            try {
-                prefs.unregisterOnSharedPreferenceChangeListener(prefListener);
-            } catch (Exception ignored) {
-                // no-op
-            }
-        }
+        AppConfig.removeListener(configListener);
+        commandConflator.shutdown();
+        // Останавливает и потоки менеджера: иначе они держали бы эту активити после пересоздания
+        tcpManager.close();
         uiBuffer.close();
         
         // Останавливаем overlay-сервис при закрытии активити
@@ -243,17 +235,12 @@ public class MainActivity extends AppCompatActivity {
     protected void onResume() {
         super.onResume();
 
-        if (prefs == null) {
-            prefs = getSharedPreferences(AppState.PREFS_NAME, MODE_PRIVATE);
-            prefs.registerOnSharedPreferenceChangeListener(prefListener);
-        }
-
-        String host = prefs.getString(AppState.KEY_TCP_HOST, "192.168.2.6");
-        int port = prefs.getInt(AppState.KEY_TCP_PORT, 9000);
-        tcpManager.updateTarget(host, port);
+        AppConfig config = AppConfig.current();
+        tcpManager.updateTarget(config.tcpHost, config.tcpPort);
 
         ensureOverlayServiceRunning();
         StateBus.registerSelectionListener(overlaySelectionListener);
+        int currentState = StateBus.getCurrentState();
         if (currentState > 0) {
             StateBus.publishStripState(currentState);
         }
@@ -322,80 +309,125 @@ public class MainActivity extends AppCompatActivity {
      * Реагирует на выбор состояния пользователем в overlay: применяет новый режим и триггерит
      * отправку команд.
      */
-    private void handleOverlaySelection(int state) {
+    private void handleOverlaySelection(int state, int version) {
         if (state < 1 || state > 5) {
             return;
         }
-        applyStripState(state, true);
+        applyStripState(state, version, true);
     }
 
     /**
-     * Главный метод смены состояния: обновляет локальное значение, при необходимости рассылку
-     * команды и уведомление StateBus. Используется как локальными, так и внешними событиями.
+     * Главный метод смены состояния: обновляет таблицу StateBus, при необходимости рассылку
+     * команды и уведомление слушателей. Используется как локальными, так и внешними событиями.
+     * Команда уходит только если StateBus принял изменение: касание, обогнанное более свежим
+     * кадром контроллера, не должно перещёлкивать реле.
      */
-    private void applyStripState(int state, boolean sendCommands) {
+    private void applyStripState(int state, int version, boolean sendCommands) {
         if (state < 1 || state > 5) {
             return;
         }
         // Блокируем смену состояния, если включён режим редактирования overlay
-        boolean allowModification = prefs.getBoolean(AppState.KEY_OVERLAY_ALLOW_MODIFICATION, true);
-        if (allowModification) {
+        if (AppConfig.current().overlayAllowModification) {
             Log.d(TAG_SERVICE, "applyStripState ignored in edit mode state=" + state);
             return;
         }
-        currentState = state;
+        if (!StateBus.publishStripState(state, version)) {
+            Log.d(TAG_SERVICE, "applyStripState: stale version=" + version + " state=" + state);
+            return;
+        }
         if (sendCommands) {
+            echoFilter.onCommand(AppState.selectedLoco.get(), state, version);
             sendExclusiveRelays(state);
         }
-        StateBus.publishStripState(state);
     }
 
     /**
-     * Обновляет состояние полосы в ответ на внешние сигналы (TCP/UART). Не инициирует повторную
-     * отправку, чтобы избежать циклов.
+     * Снимок состояний всех локомотивов, пришедший в ответ на запрос при подключении. Вызывается на
+     * потоке чтения TCP; таблица StateBus обновляется одной версией — взятой при запросе, поэтому
+     * касания и кадры между запросом и ответом снимок не откатывает. В режиме редактирования
+     * выбранный локомотив пропускается так же, как одиночные кадры в updateStateFromExternal.
+     * Массив TcpManager не меняется: в консоль попадает то, что прислало железо. Путь не выделяет
+     * память.
      */
-    private void updateStateFromExternal(int state) {
-        if (state < 1 || state > 5) {
+    private void applyStateSnapshot(int[] states, int version) {
+        StartupTrace.mark(StartupTrace.FIRST_TCP_FRAME);
+        int count = Math.min(states.length, snapshotToPublish.length);
+        System.arraycopy(states, 0, snapshotToPublish, 0, count);
+        int selected = AppState.selectedLoco.get();
+        boolean skipSelected = AppConfig.current().overlayAllowModification && selected >= 1 && selected <= count;
+        if (skipSelected) {
+            snapshotToPublish[selected - 1] = 0;
+        }
+        int accepted = StateBus.publishSnapshot(snapshotToPublish, version);
+
+        LogLineBuffer log = uiBuffer.lines();
+        synchronized (log) {
+            log.text("[#TCP_RX#]Rx: snapshot [");
+            for (int i = 0; i < count; i++) {
+                if (i > 0) log.text(", ");
+                log.number(states[i]);
+            }
+            log.text("] applied=").number(accepted);
+            if (skipSelected) log.text(" skipped=loco").number(selected);
+            log.endLine();
+        }
+    }
+
+    /**
+     * Кадр состояния локомотива с потока чтения TCP. Путь не выделяет память: строка консоли
+     * пишется в предвыделенный буфер, состояния всех локомотивов попадают в таблицу StateBus, а на
+     * полосу — только выбранный.
+     */
+    private void onRxStateFrame(int loco, int state) {
+        StartupTrace.mark(StartupTrace.FIRST_TCP_FRAME);
+        if (state < 1 || state > 6) {
             return;
         }
-        if (state == currentState) {
+        // Версия фиксирует момент приёма кадра, а не момент публикации. Пока команда
+        // локомотива ждёт эха или ACK, кадр с другим состоянием предшествует ей и отбрасывается
+        int version = echoFilter.versionForRx(loco, state);
+        LogLineBuffer log = uiBuffer.lines();
+        synchronized (log) {
+            log.text("[#TCP_RX#]Rx: loco").number(loco).text(" -> state").number(state);
+            if (version == 0) {
+                // Каждый отброшенный кадр виден оператору: за ним может стоять настоящее изменение
+                // на железе, которое полоса покажет только со следующим кадром
+                log.text(" ignored: command state").number(echoFilter.pendingState(loco))
+                        .text(" awaiting echo");
+            }
+            log.endLine();
+        }
+        if (version == 0) {
             return;
         }
-        boolean allowModification = prefs.getBoolean(AppState.KEY_OVERLAY_ALLOW_MODIFICATION, true);
-        if (allowModification) {
-            Log.d(TAG_SERVICE, "External state update ignored (edit mode) state=" + state);
+        if (loco != AppState.selectedLoco.get()) {
+            // Невыбранные локомотивы только обновляют таблицу StateBus, чтобы при
+            // переключении полоса сразу показала их последнее состояние
+            StateBus.publishLocoState(loco, state, version);
             return;
         }
-        currentState = state;
-        StateBus.publishStripState(state);
+        // Публикуем прямо из потока чтения: подписчики получают состояние через
+        // свои исполнители со слиянием, поэтому пачка кадров не плодит сообщений UI
+        updateStateFromExternal(state, version);
     }
 
     /**
-     * Вытаскивает положительное целое после заданного токена (например, "loco=" или "state=").
-     * Возвращает -1, если токен отсутствует или значение не удалось считать.
+     * Обновляет состояние полосы в ответ на внешние сигналы (TCP/UART). Не инициирует повторную
+     * отправку, чтобы избежать циклов. Может вызываться из фонового потока: читает только
+     * снимок AppConfig и StateBus, доставку на UI выполняют подписчики.
      */
-    private int extractDecimal(String line, String token) {
-        if (line == null || token == null) {
-            return -1;
-        }
-        int idx = line.indexOf(token);
-        if (idx < 0) {
-            return -1;
-        }
-        int pos = idx + token.length();
-        int value = 0;
-        boolean has = false;
-        while (pos < line.length()) {
-            char c = line.charAt(pos);
-            if (c >= '0' && c <= '9') {
-                value = value * 10 + (c - '0');
-                has = true;
-                pos++;
-            } else {
-                break;
-            }
+    private void updateStateFromExternal(int state, int version) {
+        if (state < 1 || state > 5) {
+            return;
+        }
+        if (state == StateBus.getCurrentState()) {
+            return;
         }
-        return has ? value : -1;
+        if (AppConfig.current().overlayAllowModification) {
+            Log.d(TAG_SERVICE, "External state update ignored (edit mode) state=" + state);
+            return;
+        }
+        StateBus.publishStripState(state, version);
     }
 
     /**
@@ -476,9 +508,21 @@ public class MainActivity extends AppCompatActivity {
     private void sendExclusiveRelays(int active) {
         int loco = AppState.selectedLoco.get();
         int state = Math.max(1, Math.min(6, active));
+        commandConflator.submit(loco, state);
+    }
+
+    /**
+     * Отправляет кадр, прошедший слияние команд. Вызывается на потоке CommandConflator, в консоль
+     * попадают только реально отправленные кадры; отложенные до переподключения помечены «(queued)».
+     */
+    private void sendControlFrame(int loco, int state) {
         tcpManager.sendControl(loco, state);
-        if (tcpManager.connectionActive()) {
-            uiBuffer.offer("[#TCP_TX#]" + "Tx: loco" + loco + " -> state" + state + "\n");
+        LogLineBuffer log = uiBuffer.lines();
+        synchronized (log) {
+            log.text("[#TCP_TX#]Tx: loco").number(loco).text(" -> state").number(state);
+            // Без связи команда ждёт в outbox TcpManager и уйдёт при переподключении
+            if (!tcpManager.connectionActive()) log.text(" (queued)");
+            log.endLine();
         }
     }
 }
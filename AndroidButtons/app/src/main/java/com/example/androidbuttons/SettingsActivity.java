@@ -2,15 +2,12 @@ package com.example.androidbuttons;
 
 import android.graphics.Rect;
 import android.os.Bundle;
-import android.text.method.ScrollingMovementMethod;
-import android.text.SpannableString;
-import android.text.Spanned;
-import android.text.style.ForegroundColorSpan;
 import android.view.View;
 import android.view.ViewTreeObserver;
 import android.widget.ArrayAdapter;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.example.androidbuttons.databinding.ActivitySettingsBinding;
 
@@ -20,11 +17,16 @@ import com.example.androidbuttons.databinding.ActivitySettingsBinding;
  * управления полями и межпоточных взаимодействий.
  */
 public class SettingsActivity extends AppCompatActivity {
+    private static final long CONSOLE_RECENT_WINDOW_MS = 5 * 60 * 1000L;
+
     private ActivitySettingsBinding binding;
     private final java.util.Timer timer = new java.util.Timer("settings-console", true);
-    private final StringBuilder consoleRemainder = new StringBuilder();
+    // Разборщик строк живёт на потоке таймера консоли, UI-поток получает готовые пачки
+    private final ConsoleLineSplitter consoleSplitter = new ConsoleLineSplitter();
+    private final ConsoleLog consoleLog = new ConsoleLog(ConsoleLog.MAX_LINES);
+    private final ConsoleAdapter consoleAdapter = new ConsoleAdapter(consoleLog);
+    private LinearLayoutManager consoleLayoutManager;
     private final java.util.Timer statusTimer = new java.util.Timer("settings-status", true);
-    private android.content.SharedPreferences prefs;
 
     private String pendingHost;
     private String pendingPort;
@@ -36,6 +38,7 @@ public class SettingsActivity extends AppCompatActivity {
     private boolean keyboardVisible = false;
     private ViewTreeObserver.OnGlobalLayoutListener keyboardListener;
     private android.content.BroadcastReceiver overlayUpdateReceiver;
+    private AppConfig.Listener configListener;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -44,11 +47,18 @@ public class SettingsActivity extends AppCompatActivity {
         setContentView(binding.getRoot());
 
 
-        // Консоль делаем прокручиваемой
-        binding.textConsole.setMovementMethod(new ScrollingMovementMethod());
+        // Консоль — виртуализированный список: привязываются только видимые строки, новые строки
+        // прижимаются к низу.
+        consoleLayoutManager = new LinearLayoutManager(this);
+        consoleLayoutManager.setStackFromEnd(true);
+        binding.listConsole.setLayoutManager(consoleLayoutManager);
+        binding.listConsole.setItemAnimator(null);
+        binding.listConsole.setHasFixedSize(true);
+        binding.listConsole.setAdapter(consoleAdapter);
+        setupConsoleFilters();
 
-        // Инициализируем поля из SharedPreferences
-        prefs = getSharedPreferences(AppState.PREFS_NAME, MODE_PRIVATE);
+        // Инициализируем поля из снимка настроек
+        AppConfig.init(this);
         refreshValuesFromPreferences();
 
         // Сохраняем изменения полей только после скрытия клавиатуры
@@ -87,7 +97,7 @@ public class SettingsActivity extends AppCompatActivity {
                 Integer xValue = parseIntSafe(pendingOverlayX, -10000, 10000);
                 if (xValue != null) {
                     xValue = eliminateTinyOffset(xValue);
-                    prefs.edit().putInt(AppState.KEY_OVERLAY_X, xValue).apply();
+                    AppConfig.edit().setOverlayX(xValue).apply();
                     // Отправляем broadcast для немедленного применения
                     android.content.Intent intent = new android.content.Intent("com.example.androidbuttons.APPLY_POSITION_NOW");
                     intent.putExtra("x", xValue);
@@ -108,7 +118,7 @@ public class SettingsActivity extends AppCompatActivity {
                 // Применяем координату Y немедленно
                 Integer yValue = parseIntSafe(pendingOverlayY, -10000, 10000);
                 if (yValue != null) {
-                    prefs.edit().putInt(AppState.KEY_OVERLAY_Y, yValue).apply();
+                    AppConfig.edit().setOverlayY(yValue).apply();
                     // Отправляем broadcast для немедленного применения
                     android.content.Intent intent = new android.content.Intent("com.example.androidbuttons.APPLY_POSITION_NOW");
                     intent.putExtra("y", yValue);
@@ -127,7 +137,7 @@ public class SettingsActivity extends AppCompatActivity {
                     pendingOverlayScale = String.valueOf(scale);
                     pendingDirty = true;
                     // Применяем масштаб в реальном времени через broadcast
-                    prefs.edit().putFloat(AppState.KEY_OVERLAY_SCALE, scale).apply();
+                    AppConfig.edit().setOverlayScale(scale).apply();
                     // Отправляем broadcast для немедленного применения масштаба
                     android.content.Intent intent = new android.content.Intent("com.example.androidbuttons.APPLY_SCALE_NOW");
                     intent.putExtra("scale", scale);
@@ -160,10 +170,12 @@ public class SettingsActivity extends AppCompatActivity {
         binding.spinnerNum.setAdapter(locoAdapter);
         binding.spinnerNum.setSelection(Math.max(0, AppState.selectedLoco.get() - 1));
         // При выборе нового локомотива сразу обновляем глобальное состояние. Это решение мгновенно
-        // влияет на MainActivity, которая читает AppState.selectedLoco при отправке команд.
+        // влияет на MainActivity, которая читает AppState.selectedLoco при отправке команд, а overlay
+        // получает последнее известное состояние локомотива из таблицы StateBus.
         binding.spinnerNum.setOnItemSelectedListener(new android.widget.AdapterView.OnItemSelectedListener() {
             @Override public void onItemSelected(android.widget.AdapterView<?> parent, View view, int position, long id) {
-                AppState.selectedLoco.set(position + 1);
+                StateBus.selectLoco(position + 1);
+                if (binding.chipFilterLoco.isChecked()) applyConsoleFilter();
             }
             @Override public void onNothingSelected(android.widget.AdapterView<?> parent) { /* keep prev */ }
         });
@@ -172,13 +184,8 @@ public class SettingsActivity extends AppCompatActivity {
         binding.switchAllowOverlayModification.setOnCheckedChangeListener((buttonView, isChecked) -> {
             android.util.Log.e("SettingsActivity", "═══════ SWITCH CLICKED: isChecked=" + isChecked + " ═══════");
             
-            prefs.edit()
-                    .putBoolean(AppState.KEY_OVERLAY_ALLOW_MODIFICATION, isChecked)
-                    .commit(); // ИЗМЕНЕНО НА COMMIT для гарантии немедленного сохранения!
-            
-            // ПРОВЕРЯЕМ что сохранилось
-            boolean saved = prefs.getBoolean(AppState.KEY_OVERLAY_ALLOW_MODIFICATION, true);
-            android.util.Log.e("SettingsActivity", "═══════ SAVED VALUE: " + saved + " ═══════");
+            // Снимок публикуется сразу (overlay видит флаг немедленно), на диск — отложенно
+            AppConfig.edit().setOverlayAllowModification(isChecked).apply();
             
             String status = isChecked ? "разрешено" : "запрещено";
             android.widget.Toast.makeText(this, "Изменение окна " + status, android.widget.Toast.LENGTH_SHORT).show();
@@ -192,37 +199,34 @@ public class SettingsActivity extends AppCompatActivity {
 			}
         });
 
+        setupLocoOverlayChips();
+
         // Загружаем состояние переключателя
         binding.switchAllowOverlayModification.setChecked(
-                prefs.getBoolean(AppState.KEY_OVERLAY_ALLOW_MODIFICATION, true)
+                AppConfig.current().overlayAllowModification
         );
     // Применяем состояние edit-mode к контролам
     applyEditModeEnabled(binding.switchAllowOverlayModification.isChecked());
 
     // Слушатель внешних изменений (если флаг изменён из другого места)
-    prefs.registerOnSharedPreferenceChangeListener((sharedPreferences, key) -> {
-        if (AppState.KEY_OVERLAY_ALLOW_MODIFICATION.equals(key)) {
-            boolean allow = sharedPreferences.getBoolean(AppState.KEY_OVERLAY_ALLOW_MODIFICATION, true);
+    AppConfig.init(this);
+    configListener = (previous, config) -> {
+        if (previous.overlayAllowModification == config.overlayAllowModification) return;
+        boolean allow = config.overlayAllowModification;
+        runOnUiThread(() -> {
             if (binding.switchAllowOverlayModification.isChecked() != allow) {
                 binding.switchAllowOverlayModification.setChecked(allow);
             }
             applyEditModeEnabled(allow);
-        }
-    });
+        });
+    };
+    AppConfig.addListener(configListener);
 
-        // Периодически сливаем очередь лога в text_console
+        // Периодически сливаем очередь лога в консоль. Разбор на строки выполняется здесь, на
+        // потоке таймера, — UI-поток получает одну готовую пачку за тик.
         timer.scheduleAtFixedRate(new java.util.TimerTask() {
             @Override public void run() {
-                StringBuilder sb = new StringBuilder();
-                while (!AppState.consoleQueue.isEmpty()) {
-                    String s = AppState.consoleQueue.poll();
-                    if (s == null) break;
-                    sb.append(s);
-                }
-                if (sb.length() > 0) {
-                    String out = sb.toString();
-                    runOnUiThread(() -> appendColored(out));
-                }
+                drainConsoleQueue(AppState.consoleQueue, SettingsActivity.this::runOnUiThread);
             }
         }, 200, 200);
 
@@ -300,6 +304,24 @@ public class SettingsActivity extends AppCompatActivity {
      * Активация / деактивация элементов UI для редактирования overlay (позиция, масштаб).
      * В режиме редактирования (allow=true) — поля активны, иначе отключены.
      */
+    /**
+     * Чипы Loco1..Loco8 для дополнительных полос overlay: отмеченный локомотив получает своё окно.
+     */
+    private void setupLocoOverlayChips() {
+        AppConfig config = AppConfig.current();
+        for (int loco = 1; loco <= StateBus.LOCO_COUNT; loco++) {
+            com.google.android.material.chip.Chip chip = new com.google.android.material.chip.Chip(this);
+            chip.setChipDrawable(com.google.android.material.chip.ChipDrawable.createFromAttributes(
+                    this, null, 0, com.google.android.material.R.style.Widget_Material3_Chip_Filter));
+            chip.setText("Loco" + loco);
+            chip.setChecked(config.isLocoOverlayShown(loco));
+            final int chipLoco = loco;
+            chip.setOnCheckedChangeListener((button, checked) ->
+                    AppConfig.edit().setLocoOverlayShown(chipLoco, checked).apply());
+            binding.chipGroupLocoOverlays.addView(chip);
+        }
+    }
+
     private void applyEditModeEnabled(boolean allow) {
         // Поля координат и масштаб
         binding.valueOverlayX.setEnabled(allow);
@@ -313,6 +335,21 @@ public class SettingsActivity extends AppCompatActivity {
         binding.textScaleValue.setAlpha(alpha);
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Экран снова виден — отдаём RecyclerView накопленное состояние и прокручиваем к последней строке
+        consoleAdapter.setRendering(true);
+        scrollConsoleToBottom();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Пока экран не виден, строки продолжают копиться в ограниченном журнале, но не рисуются
+        consoleAdapter.setRendering(false);
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -329,6 +366,7 @@ public class SettingsActivity extends AppCompatActivity {
         super.onDestroy();
         timer.cancel();
         statusTimer.cancel();
+        AppConfig.removeListener(configListener);
         if (keyboardListener != null) {
             View root = binding.getRoot();
             root.getViewTreeObserver().removeOnGlobalLayoutListener(keyboardListener);
@@ -347,55 +385,96 @@ public class SettingsActivity extends AppCompatActivity {
 				"X=" + pendingOverlayX + " Y=" + pendingOverlayY + 
 				" Scale=" + pendingOverlayScale);
 		applyPendingChanges(true);
+		// Экран уходит — не ждём периода затишья, чтобы не потерять изменения
+		AppConfig.flush();
         // Removed alpha broadcast code
         }
 
-        /**
-     * Добавляет строки из лога в текстовое поле с подсветкой префиксов. Реализация учитывает, что
-     * данные приходят пачками; поэтому храним «хвост» без переводов строк и дорисовываем его при
-     * следующем вызове.
+    /**
+     * Забирает очередь лога и разбирает её на строки на вызывающем потоке. В uiExecutor уходит не
+     * больше одной задачи — готовая пачка, сколько бы строк ни накопилось. Открыт в пакете для
+     * тестов производительности; synchronized — разборщик хранит незавершённую строку между вызовами.
      */
-    private void appendColored(String text) {
-        consoleRemainder.append(text);
-        int idx;
-        while ((idx = indexOfNewline(consoleRemainder)) >= 0) {
-            String line = consoleRemainder.substring(0, idx + 1);
-            consoleRemainder.delete(0, idx + 1);
-
-            int color = -1;
-            int removeLen = 0;
-            if (line.startsWith("[UART→]")) {
-                color = 0xFF90EE90; removeLen = "[UART→]".length();
-            } else if (line.startsWith("[UART←]")) {
-                color = 0xFF006400; removeLen = "[UART←]".length();
-            } else if (line.startsWith("[#TCP_TX#]")) {
-                color = 0xFF87CEFA; removeLen = "[#TCP_TX#]".length();
-            } else if (line.startsWith("[#TCP_RX#]")) {
-                color = 0xFF0000FF; removeLen = "[#TCP_RX#]".length();
-            }
-
-            if (removeLen > 0 && removeLen <= line.length()) {
-                line = line.substring(removeLen);
-            }
-            if (color != -1) {
-                SpannableString ss = new SpannableString(line);
-                ss.setSpan(new ForegroundColorSpan(color), 0, ss.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-                binding.textConsole.append(ss);
-            } else {
-                binding.textConsole.append(line);
-            }
+    synchronized void drainConsoleQueue(java.util.Queue<String> source, java.util.concurrent.Executor uiExecutor) {
+        StringBuilder sb = new StringBuilder();
+        while (!source.isEmpty()) {
+            String s = source.poll();
+            if (s == null) break;
+            sb.append(s);
+        }
+        if (sb.length() == 0) return;
+        ConsoleLineSplitter.Batch batch = new ConsoleLineSplitter.Batch();
+        if (consoleSplitter.feed(sb, batch) > 0) {
+            uiExecutor.execute(() -> appendBatch(batch));
         }
-        int scrollAmount = binding.textConsole.getLayout() != null
-                ? binding.textConsole.getLayout().getLineTop(binding.textConsole.getLineCount()) - binding.textConsole.getHeight()
-                : 0;
-        if (scrollAmount > 0) binding.textConsole.scrollTo(0, scrollAmount);
     }
 
-    private static int indexOfNewline(StringBuilder sb) {
-        for (int i = 0; i < sb.length(); i++) {
-            if (sb.charAt(i) == '\n') return i;
+    /** Число строк в журнале консоли (без учёта фильтра). */
+    int consoleLineCount() {
+        return consoleLog.size();
+    }
+
+    /**
+     * Переносит пачку уже разобранных строк в журнал консоли. Стоимость линейна по размеру пачки,
+     * RecyclerView получает одно уведомление на всю пачку.
+     */
+    private void appendBatch(ConsoleLineSplitter.Batch batch) {
+        boolean pinned = isConsolePinnedToBottom();
+        // Строки, которые всё равно будут вытеснены этой же пачкой, в журнал не копируем
+        int from = Math.max(0, batch.size - consoleLog.capacity());
+        for (int i = from; i < batch.size; i++) {
+            consoleLog.append(batch.lines[i], batch.colors[i], batch.tags[i], batch.timeMs);
         }
-        return -1;
+        consoleAdapter.onLinesAppended(batch.size - from);
+        // Прокручиваем вниз, только если пользователь не листает историю вверх
+        if (pinned) scrollConsoleToBottom();
+    }
+
+    private boolean isConsolePinnedToBottom() {
+        return consoleAdapter.isRendering() && !binding.listConsole.canScrollVertically(1);
+    }
+
+    private void scrollConsoleToBottom() {
+        int count = consoleAdapter.getItemCount();
+        if (count > 0) binding.listConsole.scrollToPosition(count - 1);
+    }
+
+    /**
+     * Подключает строку поиска и чипы фильтров консоли. Любое изменение пересобирает запрос к
+     * индексу консоли; пока фильтр активен, новые строки проверяются по одной.
+     */
+    private void setupConsoleFilters() {
+        binding.valueConsoleSearch.addTextChangedListener(new android.text.TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
+            @Override public void afterTextChanged(android.text.Editable s) { applyConsoleFilter(); }
+        });
+        android.widget.CompoundButton.OnCheckedChangeListener chipListener =
+                (buttonView, isChecked) -> applyConsoleFilter();
+        binding.chipFilterLoco.setOnCheckedChangeListener(chipListener);
+        binding.chipFilterTx.setOnCheckedChangeListener(chipListener);
+        binding.chipFilterRx.setOnCheckedChangeListener(chipListener);
+        binding.chipFilterErrors.setOnCheckedChangeListener(chipListener);
+        binding.chipFilterRecent.setOnCheckedChangeListener(chipListener);
+    }
+
+    private void applyConsoleFilter() {
+        int loco = binding.chipFilterLoco.isChecked() ? AppState.selectedLoco.get() : 0;
+        int direction = 0;
+        if (binding.chipFilterTx.isChecked()) direction |= ConsoleLog.TAG_TX;
+        if (binding.chipFilterRx.isChecked()) direction |= ConsoleLog.TAG_RX;
+        // Окно «5 минут» отсчитывается от момента применения фильтра
+        long since = binding.chipFilterRecent.isChecked()
+                ? System.currentTimeMillis() - CONSOLE_RECENT_WINDOW_MS
+                : 0L;
+        CharSequence text = binding.valueConsoleSearch.getText();
+        consoleAdapter.setFilter(new ConsoleIndex.Query(
+                loco,
+                direction,
+                binding.chipFilterErrors.isChecked(),
+                since,
+                text != null ? text.toString() : null));
+        scrollConsoleToBottom();
     }
 
     /**
@@ -423,15 +502,16 @@ public class SettingsActivity extends AppCompatActivity {
     }
 
     /**
-     * Перечитывает актуальные значения из SharedPreferences и заполняет поля ввода без срабатывания
+     * Перечитывает актуальные значения из снимка AppConfig и заполняет поля ввода без срабатывания
      * вотчеров. Также сбрасывает флаги «грязности» pending-полей.
      */
     private void refreshValuesFromPreferences() {
-        String host = prefs.getString(AppState.KEY_TCP_HOST, "192.168.2.6");
-        int port = prefs.getInt(AppState.KEY_TCP_PORT, 9000);
-    int overlayX = eliminateTinyOffset(prefs.getInt(AppState.KEY_OVERLAY_X, 0));
-    int overlayY = prefs.getInt(AppState.KEY_OVERLAY_Y, 0);
-        float overlayScale = prefs.getFloat(AppState.KEY_OVERLAY_SCALE, 1.0f);
+        AppConfig config = AppConfig.current();
+        String host = config.tcpHost;
+        int port = config.tcpPort;
+        int overlayX = eliminateTinyOffset(config.overlayX);
+        int overlayY = config.overlayY;
+        float overlayScale = config.overlayScale;
 
         pendingHost = host;
         pendingPort = String.valueOf(port);
@@ -456,8 +536,9 @@ public class SettingsActivity extends AppCompatActivity {
     }
 
     /**
-     * Сохраняет накопленные изменения в SharedPreferences. Валидация порта/scale не даёт
-     * записать некорректные значения; если поле пустое — оставляем прежнее.
+     * Сохраняет накопленные изменения в AppConfig. Сравнение идёт с текущим снимком в памяти, а
+     * запись на диск выполняет отложенное хранилище. Валидация порта/scale не даёт записать
+     * некорректные значения; если поле пустое — оставляем прежнее.
      *
      * @param force true, если нужно сохранить даже без флага pendingDirty (например, при паузе).
      */
@@ -465,54 +546,55 @@ public class SettingsActivity extends AppCompatActivity {
         if (!force && !pendingDirty) {
             return;
         }
+        AppConfig config = AppConfig.current();
 
         String hostValue = pendingHost != null ? pendingHost.trim() : "";
         if (hostValue.isEmpty()) {
-            hostValue = prefs.getString(AppState.KEY_TCP_HOST, "192.168.2.6");
+            hostValue = config.tcpHost;
         }
 
         Integer portValue = parseIntSafe(pendingPort, 1, 65535);
         if (portValue == null) {
-            portValue = prefs.getInt(AppState.KEY_TCP_PORT, 9000);
+            portValue = config.tcpPort;
         }
 
         // Overlay координаты и масштаб
         Integer overlayXValue = parseIntSafe(pendingOverlayX, -10000, 10000);
         if (overlayXValue == null) {
-            overlayXValue = prefs.getInt(AppState.KEY_OVERLAY_X, 0);
+            overlayXValue = config.overlayX;
         }
         overlayXValue = eliminateTinyOffset(overlayXValue);
 
         Integer overlayYValue = parseIntSafe(pendingOverlayY, -10000, 10000);
         if (overlayYValue == null) {
-            overlayYValue = prefs.getInt(AppState.KEY_OVERLAY_Y, 0);
+            overlayYValue = config.overlayY;
         }
 
         Float overlayScaleValue = parseFloatSafe(pendingOverlayScale, 0.1f, 5.0f);
         if (overlayScaleValue == null) {
-            overlayScaleValue = prefs.getFloat(AppState.KEY_OVERLAY_SCALE, 1.0f);
+            overlayScaleValue = config.overlayScale;
         }
 
         boolean changed = false;
-        android.content.SharedPreferences.Editor editor = prefs.edit();
-        if (!hostValue.equals(prefs.getString(AppState.KEY_TCP_HOST, ""))) {
-            editor.putString(AppState.KEY_TCP_HOST, hostValue);
+        AppConfig.Editor editor = AppConfig.edit();
+        if (!hostValue.equals(config.tcpHost)) {
+            editor.setTcpHost(hostValue);
             changed = true;
         }
-        if (portValue != prefs.getInt(AppState.KEY_TCP_PORT, 9000)) {
-            editor.putInt(AppState.KEY_TCP_PORT, portValue);
+        if (portValue != config.tcpPort) {
+            editor.setTcpPort(portValue);
             changed = true;
         }
-        if (overlayXValue != prefs.getInt(AppState.KEY_OVERLAY_X, 0)) {
-            editor.putInt(AppState.KEY_OVERLAY_X, overlayXValue);
+        if (overlayXValue != config.overlayX) {
+            editor.setOverlayX(overlayXValue);
             changed = true;
         }
-        if (overlayYValue != prefs.getInt(AppState.KEY_OVERLAY_Y, 0)) {
-            editor.putInt(AppState.KEY_OVERLAY_Y, overlayYValue);
+        if (overlayYValue != config.overlayY) {
+            editor.setOverlayY(overlayYValue);
             changed = true;
         }
-        if (Math.abs(overlayScaleValue - prefs.getFloat(AppState.KEY_OVERLAY_SCALE, 1.0f)) > 0.001f) {
-            editor.putFloat(AppState.KEY_OVERLAY_SCALE, overlayScaleValue);
+        if (Math.abs(overlayScaleValue - config.overlayScale) > 0.001f) {
+            editor.setOverlayScale(overlayScaleValue);
             changed = true;
         }
         if (changed) {
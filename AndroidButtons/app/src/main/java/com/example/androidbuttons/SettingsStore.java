@@ -0,0 +1,203 @@
+package com.example.androidbuttons;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отложенная (write-behind) запись снимка {@link AppConfig} в компактный бинарный файл.
+ * {@link #schedule(AppConfig)} только запоминает последний снимок и переносит таймер записи; файл
+ * пишется один раз, когда изменения затихли на {@link #QUIET_PERIOD_MS}. Запись атомарна:
+ * данные уходят во временный файл, синхронизируются с диском и переименовываются поверх основного,
+ * поэтому при обрыве питания остаётся либо старый, либо новый снимок целиком.
+ */
+final class SettingsStore {
+
+    private static final String TAG = "SettingsStore";
+
+    /** Период затишья, после которого отложенный снимок записывается на диск. */
+    static final long QUIET_PERIOD_MS = 500L;
+
+    private static final int MAGIC = 0x41425346; // "ABSF"
+    // 1 — исходный набор полей, 2 — добавлено окно успокоения команд, 3 — последнее состояние полосы,
+    // 4 — дополнительные полосы локомотивов
+    private static final int FORMAT_VERSION = 4;
+
+    private final File file;
+    private final File tempFile;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "settings-store");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Сериализует записи потока хранилища и flush(): оба пишут один и тот же временный файл
+    private final Object writeLock = new Object();
+    private AppConfig pending;
+    // Последний известный снимок: с ним пишется файл, когда изменилось только состояние полосы
+    private AppConfig latest;
+    // Состояние полосы — данные работы, а не настройка: хранится отдельно от снимка AppConfig
+    private int lastStripState = 0;
+    private boolean stripStateDirty = false;
+    private ScheduledFuture<?> pendingWrite;
+    private int writeCount = 0;
+
+    SettingsStore(File file) {
+        this.file = file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+    }
+
+    /**
+     * Читает снимок из файла. Возвращает null, если файла нет или он повреждён — тогда вызывающий
+     * код берёт значения из прежнего источника.
+     */
+    AppConfig load() {
+        if (!file.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = in.readInt() == MAGIC ? in.readUnsignedByte() : -1;
+            if (version < 1 || version > FORMAT_VERSION) {
+                Log.w(TAG, "Unknown settings file format, ignoring");
+                return null;
+            }
+            String host = in.readUTF();
+            int port = in.readInt();
+            int x = in.readInt();
+            int y = in.readInt();
+            float scale = in.readFloat();
+            boolean allow = in.readBoolean();
+            boolean positionSaved = in.readBoolean();
+            int settleMs = version >= 2 ? in.readInt() : (int) CommandConflator.DEFAULT_SETTLE_MS;
+            int lastStripState = version >= 3 ? in.readUnsignedByte() : 0;
+            int locoMask = 0;
+            int[] locoX = new int[StateBus.LOCO_COUNT + 1];
+            int[] locoY = new int[StateBus.LOCO_COUNT + 1];
+            float[] locoScale = new float[StateBus.LOCO_COUNT + 1];
+            if (version >= 4) {
+                locoMask = in.readInt();
+                for (int loco = 1; loco <= StateBus.LOCO_COUNT; loco++) {
+                    locoX[loco] = in.readInt();
+                    locoY[loco] = in.readInt();
+                    locoScale[loco] = in.readFloat();
+                }
+            }
+            AppConfig loaded = new AppConfig(host, port, x, y, scale, allow, positionSaved, settleMs,
+                    locoMask, locoX, locoY, locoScale);
+            synchronized (this) {
+                latest = loaded;
+                this.lastStripState = lastStripState;
+            }
+            return loaded;
+        } catch (IOException ex) {
+            Log.w(TAG, "Failed to read settings file", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Запоминает снимок для записи и переносит таймер: пока изменения идут чаще периода затишья,
+     * диск не трогается.
+     */
+    synchronized void schedule(AppConfig snapshot) {
+        pending = snapshot;
+        latest = snapshot;
+        if (pendingWrite != null) pendingWrite.cancel(false);
+        pendingWrite = writer.schedule(this::writePending, QUIET_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Записывает отложенный снимок синхронно, на вызывающем потоке, без ожидания периода затишья.
+     * Если поток хранилища уже пишет, дожидается окончания его записи. Вызывается на путях
+     * жизненного цикла (onPause/onDestroy), после которых процесс может быть убит в любой момент.
+     */
+    void flush() {
+        synchronized (this) {
+            if (pendingWrite != null) {
+                pendingWrite.cancel(false);
+                pendingWrite = null;
+            }
+        }
+        writePending();
+    }
+
+    /** Последнее показанное состояние полосы (0 — неизвестно). */
+    synchronized int lastStripState() {
+        return lastStripState;
+    }
+
+    /**
+     * Запоминает состояние полосы без записи на диск и без таймера: оно уходит в файл при
+     * {@link #flush()} или со следующей записью снимка.
+     */
+    synchronized void setLastStripState(int state) {
+        if (lastStripState == state) return;
+        lastStripState = state;
+        stripStateDirty = true;
+    }
+
+    /** Количество выполненных записей на диск (для диагностики). */
+    synchronized int writeCount() {
+        return writeCount;
+    }
+
+    private void writePending() {
+        synchronized (writeLock) {
+            AppConfig snapshot;
+            int stripState;
+            synchronized (this) {
+                snapshot = pending != null ? pending : stripStateDirty ? latest : null;
+                pending = null;
+                pendingWrite = null;
+                if (snapshot == null) return;
+                stripState = lastStripState;
+                stripStateDirty = false;
+            }
+            try {
+                write(snapshot, stripState);
+                synchronized (this) {
+                    writeCount++;
+                }
+            } catch (IOException ex) {
+                Log.e(TAG, "Failed to persist settings", ex);
+            }
+        }
+    }
+
+    private void write(AppConfig config, int stripState) throws IOException {
+        FileOutputStream fos = new FileOutputStream(tempFile);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeUTF(config.tcpHost);
+            out.writeInt(config.tcpPort);
+            out.writeInt(config.overlayX);
+            out.writeInt(config.overlayY);
+            out.writeFloat(config.overlayScale);
+            out.writeBoolean(config.overlayAllowModification);
+            out.writeBoolean(config.overlayPositionSaved);
+            out.writeInt(config.commandSettleMs);
+            out.writeByte(stripState);
+            out.writeInt(config.locoOverlayMask);
+            for (int loco = 1; loco <= StateBus.LOCO_COUNT; loco++) {
+                out.writeInt(config.locoOverlayX(loco));
+                out.writeInt(config.locoOverlayY(loco));
+                out.writeFloat(config.locoOverlayScale(loco));
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("rename " + tempFile + " -> " + file + " failed");
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.androidbuttons;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.RadialGradient;
+import android.graphics.Shader;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Полоса светофора, нарисованная процедурно: пять ламп (зелёный, жёлтый, красный+жёлтый, красный,
+ * белый) сверху вниз, лампа N горит в состоянии N. Геометрия совпадает с зонами касания
+ * (высота / 5, см. {@link #zoneForY(float, int)}), поэтому картинка и обработка касаний не
+ * расходятся. Шейдеры и кисти пересоздаются только при изменении размера; смена состояния —
+ * это лишь invalidate(), без изображений и декодирования, а при любом масштабе линии остаются чёткими.
+ */
+public class SignalStripView extends View {
+
+    public static final int LAMP_COUNT = 5;
+
+    // Пропорции сняты с прежних PNG 476×2047
+    private static final float LAMP_RADIUS_OF_WIDTH = 0.31f;
+    private static final float LAMP_RADIUS_OF_ZONE = 0.40f;
+    private static final float RING_OF_RADIUS = 0.055f;
+    private static final float DIVIDER_OF_RADIUS = 0.08f;
+
+    private static final int COLOR_BG_TOP = 0xFF3C3C3C;
+    private static final int COLOR_BG_BOTTOM = 0xFF2A2A2A;
+    private static final int COLOR_RING = 0xFF5C6370;
+    private static final int COLOR_DARK_CENTER = 0xFF1E1E1E;
+    private static final int COLOR_DARK_EDGE = 0xFF000000;
+    private static final int COLOR_GREEN = 0xFF00C853;
+    private static final int COLOR_YELLOW = 0xFFD4A800;
+    private static final int COLOR_RED = 0xFFD50000;
+    private static final int COLOR_WHITE = 0xFFF2F2F2;
+
+    private final Paint backgroundPaint = new Paint();
+    private final Paint ringPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint darkPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint dividerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint greenPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint yellowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint redPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint whitePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private float lampRadius;
+    private float zoneHeight;
+    private float centerX;
+
+    private int state = 0;
+    // Переход: лампа fromState гаснет, toState загорается; fraction 0..1
+    private int fromState = 0;
+    private float transition = 1f;
+
+    // Стоимость отрисовки (только главный поток): число кадров, суммарное и худшее время
+    private int drawCount = 0;
+    private long drawNanos = 0;
+    private long maxDrawNanos = 0;
+
+    public SignalStripView(Context context) {
+        this(context, null);
+    }
+
+    public SignalStripView(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public SignalStripView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        ringPaint.setStyle(Paint.Style.STROKE);
+        ringPaint.setColor(COLOR_RING);
+        dividerPaint.setColor(COLOR_RING);
+    }
+
+    /**
+     * Номер зоны (состояния 1..5) для координаты касания. Та же геометрия, по которой
+     * расставлены лампы.
+     */
+    public static int zoneForY(float y, int height) {
+        if (height <= 0) return 0;
+        int zone = (int) (y / (height / (float) LAMP_COUNT)) + 1;
+        if (zone < 1) zone = 1; else if (zone > LAMP_COUNT) zone = LAMP_COUNT;
+        return zone;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    /** Мгновенно показывает состояние (0 — все лампы погашены). */
+    public void setState(int newState) {
+        int s = newState >= 1 && newState <= LAMP_COUNT ? newState : 0;
+        if (s == state && transition >= 1f) return;
+        state = s;
+        fromState = 0;
+        transition = 1f;
+        invalidate();
+    }
+
+    /**
+     * Промежуточный кадр перехода from → to. Первая половина зажигает новую лампу, вторая гасит
+     * старую (smoothstep на каждой половине) — та же кривая, что была у crossfade изображений.
+     */
+    public void setTransition(int from, int to, float fraction) {
+        fromState = from >= 1 && from <= LAMP_COUNT ? from : 0;
+        state = to >= 1 && to <= LAMP_COUNT ? to : 0;
+        transition = Math.max(0f, Math.min(1f, fraction));
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        zoneHeight = h / (float) LAMP_COUNT;
+        centerX = w / 2f;
+        lampRadius = Math.max(1f, Math.min(w * LAMP_RADIUS_OF_WIDTH, zoneHeight * LAMP_RADIUS_OF_ZONE));
+        backgroundPaint.setShader(new LinearGradient(0, 0, 0, Math.max(1, h),
+                COLOR_BG_TOP, COLOR_BG_BOTTOM, Shader.TileMode.CLAMP));
+        ringPaint.setStrokeWidth(Math.max(1f, lampRadius * RING_OF_RADIUS));
+        // Радиальные шейдеры центрированы в (0,0): лампа рисуется после translate к её центру,
+        // поэтому один шейдер на цвет обслуживает любую позицию
+        darkPaint.setShader(radial(COLOR_DARK_CENTER, COLOR_DARK_EDGE));
+        greenPaint.setShader(radial(COLOR_GREEN, darken(COLOR_GREEN)));
+        yellowPaint.setShader(radial(COLOR_YELLOW, darken(COLOR_YELLOW)));
+        redPaint.setShader(radial(COLOR_RED, darken(COLOR_RED)));
+        whitePaint.setShader(radial(COLOR_WHITE, darken(COLOR_WHITE)));
+    }
+
+    /** Сводка стоимости отрисовки для логов. */
+    String drawStats() {
+        long avgUs = drawCount > 0 ? drawNanos / drawCount / 1000 : 0;
+        return "draws=" + drawCount + " avgUs=" + avgUs + " maxUs=" + maxDrawNanos / 1000;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        int w = getWidth();
+        int h = getHeight();
+        if (w <= 0 || h <= 0) return;
+        long startNs = System.nanoTime();
+        canvas.drawRect(0, 0, w, h, backgroundPaint);
+        float inLevel = transition >= 1f ? 1f : smooth(Math.min(1f, transition * 2f));
+        float outLevel = transition >= 1f ? 0f : 1f - smooth(Math.max(0f, transition * 2f - 1f));
+        for (int lamp = 1; lamp <= LAMP_COUNT; lamp++) {
+            float level = 0f;
+            if (lamp == state) level = inLevel;
+            if (lamp == fromState && fromState != state) level = Math.max(level, outLevel);
+            drawLamp(canvas, lamp, level);
+        }
+        if (state != 0) StartupTrace.mark(StartupTrace.FIRST_STATE_PAINTED);
+        long spent = System.nanoTime() - startNs;
+        drawCount++;
+        drawNanos += spent;
+        if (spent > maxDrawNanos) maxDrawNanos = spent;
+    }
+
+    private void drawLamp(Canvas canvas, int lamp, float level) {
+        float cy = zoneHeight * (lamp - 0.5f);
+        int save = canvas.save();
+        canvas.translate(centerX, cy);
+        float r = lampRadius;
+        canvas.drawCircle(0, 0, r, darkPaint);
+        if (level > 0f) {
+            int alpha = Math.round(level * 255);
+            if (lamp == 3) {
+                // Красный+жёлтый: верхняя половина жёлтая, нижняя красная, между ними перемычка
+                float gap = r * DIVIDER_OF_RADIUS;
+                canvas.save();
+                canvas.clipRect(-r, -r, r, -gap / 2f);
+                yellowPaint.setAlpha(alpha);
+                canvas.drawCircle(0, 0, r, yellowPaint);
+                canvas.restore();
+                canvas.save();
+                canvas.clipRect(-r, gap / 2f, r, r);
+                redPaint.setAlpha(alpha);
+                canvas.drawCircle(0, 0, r, redPaint);
+                canvas.restore();
+                dividerPaint.setAlpha(alpha);
+                canvas.drawRect(-r, -gap / 2f, r, gap / 2f, dividerPaint);
+            } else {
+                Paint lit = litPaint(lamp);
+                lit.setAlpha(alpha);
+                canvas.drawCircle(0, 0, r, lit);
+            }
+        }
+        canvas.drawCircle(0, 0, r, ringPaint);
+        canvas.restoreToCount(save);
+    }
+
+    private Paint litPaint(int lamp) {
+        switch (lamp) {
+            case 1: return greenPaint;
+            case 2: return yellowPaint;
+            case 4: return redPaint;
+            default: return whitePaint;
+        }
+    }
+
+    private Shader radial(int center, int edge) {
+        return new RadialGradient(0, 0, lampRadius, center, edge, Shader.TileMode.CLAMP);
+    }
+
+    private static int darken(int color) {
+        int r = ((color >> 16) & 0xFF) * 2 / 5;
+        int g = ((color >> 8) & 0xFF) * 2 / 5;
+        int b = (color & 0xFF) * 2 / 5;
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static float smooth(float t) {
+        return t * t * (3f - 2f * t);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.androidbuttons;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Точки трассировки холодного старта. Каждая точка фиксируется один раз (первый вызов
+ * {@link #mark(int)} побеждает) как время от старта процесса и пишется в logcat с тегом
+ * {@value #TAG}; сводка уходит и в консоль экрана настроек. Для первой отрисовки состояния
+ * проверяется бюджет {@link #FIRST_PAINT_BUDGET_MS}: после перезапуска планшета сигнал должен
+ * появиться на экране не позже него.
+ */
+final class StartupTrace {
+
+    private static final String TAG = "StartupTrace";
+
+    static final int SERVICE_CREATE = 0;
+    static final int OVERLAY_ATTACHED = 1;
+    static final int FIRST_STATE_PAINTED = 2;
+    static final int MAIN_ACTIVITY_CREATE = 3;
+    static final int FIRST_TCP_FRAME = 4;
+
+    private static final String[] NAMES = {
+            "service_create", "overlay_attached", "first_state_painted", "main_activity_create", "first_tcp_frame"
+    };
+
+    /** Бюджет от старта процесса до первой отрисованной полосы, мс. */
+    static final long FIRST_PAINT_BUDGET_MS = 1500L;
+
+    // Старт процесса: точное время доступно с API 24, раньше — момент загрузки этого класса
+    private static final long PROCESS_START_MS = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+            ? Process.getStartElapsedRealtime()
+            : SystemClock.elapsedRealtime();
+
+    // 0 — точка ещё не достигнута, иначе время от старта процесса + 1 (чтобы 0 мс отличался от «нет»)
+    private static final AtomicLongArray marks = new AtomicLongArray(NAMES.length);
+
+    private StartupTrace() {}
+
+    /** Фиксирует точку, если она ещё не была отмечена. Дешёвый вызов после первой отметки. */
+    static void mark(int point) {
+        if (marks.get(point) != 0) return;
+        long sinceStart = SystemClock.elapsedRealtime() - PROCESS_START_MS;
+        if (!marks.compareAndSet(point, 0, sinceStart + 1)) return;
+        Log.i(TAG, NAMES[point] + " +" + sinceStart + "ms");
+        if (point == FIRST_STATE_PAINTED && sinceStart > FIRST_PAINT_BUDGET_MS) {
+            Log.w(TAG, "First paint over budget: " + sinceStart + "ms > " + FIRST_PAINT_BUDGET_MS + "ms");
+        }
+        if (point == FIRST_STATE_PAINTED || point == FIRST_TCP_FRAME) {
+            AppState.consoleQueue.offer("Startup " + summary() + "\n");
+        }
+    }
+
+    /** Время точки от старта процесса, мс, или -1, если точка не достигнута. */
+    static long elapsedMs(int point) {
+        long v = marks.get(point);
+        return v == 0 ? -1 : v - 1;
+    }
+
+    /** Все достигнутые точки в одну строку: «service_create=+120ms overlay_attached=+180ms …». */
+    static String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NAMES.length; i++) {
+            long ms = elapsedMs(i);
+            if (ms < 0) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(NAMES[i]).append("=+").append(ms).append("ms");
+        }
+        return sb.toString();
+    }
+}
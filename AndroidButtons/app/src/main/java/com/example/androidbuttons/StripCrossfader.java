@@ -0,0 +1,183 @@
+package com.example.androidbuttons;
+
+import android.animation.Animator;
+import android.animation.ValueAnimator;
+import android.os.SystemClock;
+
+/**
+ * Плавные переходы полосы {@link SignalStripView} на одном переиспользуемом {@link ValueAnimator}.
+ * Если новое состояние приходит во время перехода, аниматор не перезапускается: состояние
+ * запоминается как следующая цель (последнее побеждает, промежуточные пропускаются) и после
+ * окончания текущего перехода запускается короткий переход к ней. Счётчики позволяют оценить
+ * число переходов, пропусков и стоимость кадра. Все методы — только главный поток.
+ */
+final class StripCrossfader implements ValueAnimator.AnimatorUpdateListener, Animator.AnimatorListener {
+
+    private final SignalStripView view;
+    private final ValueAnimator animator;
+    private final long durationMs;
+    private final long chainDurationMs;
+
+    private int from = 0;
+    private int to = 0;
+    // Следующая цель, пришедшая во время перехода (0 — нет)
+    private int queued = 0;
+    private boolean running = false;
+    private long startedAtMs;
+    private JankTracker jankTracker;
+    // Открыто ли взаимодействие CROSSFADE в трекере этой полосой
+    private boolean jankOpen = false;
+
+    // Диагностика
+    private int transitions = 0;
+    private int chained = 0;
+    private int skipped = 0;
+    private int frames = 0;
+    private long lastTransitionMs = 0;
+
+    StripCrossfader(SignalStripView view, long durationMs) {
+        this.view = view;
+        this.durationMs = durationMs;
+        // Цепочка догоняет последнее состояние быстрее, чтобы полоса не отставала от серии команд
+        this.chainDurationMs = Math.max(1L, durationMs / 3);
+        this.animator = ValueAnimator.ofFloat(0f, 1f);
+        this.animator.addUpdateListener(this);
+        this.animator.addListener(this);
+    }
+
+    /** Подключает замер кадров: переходы отмечаются как взаимодействие CROSSFADE. */
+    void setJankTracker(JankTracker tracker) {
+        endJank();
+        jankTracker = tracker;
+        if (running) beginJank();
+    }
+
+    /** Показывает состояние сразу, прерывая переход и сбрасывая очередь. */
+    void show(int state) {
+        queued = 0;
+        stop();
+        view.setState(state);
+    }
+
+    /**
+     * Плавно переводит полосу к состоянию. Во время перехода состояние лишь становится следующей
+     * целью; если цель уже была, предыдущая считается пропущенной.
+     */
+    void crossfadeTo(int state) {
+        if (running) {
+            if (state == to) {
+                if (queued != 0) skipped++;
+                queued = 0;
+            } else {
+                if (queued != 0 && queued != state) skipped++;
+                queued = state;
+            }
+            return;
+        }
+        int current = view.getState();
+        if (current == state) return;
+        if (current == 0) {
+            view.setState(state);
+            return;
+        }
+        start(current, state, durationMs);
+    }
+
+    /** Прерывает переход и фиксирует его цель (и отложенную цель, если она есть). */
+    void cancel() {
+        int target = queued != 0 ? queued : to;
+        queued = 0;
+        if (running) {
+            stop();
+            view.setState(target);
+        }
+    }
+
+    void pause() {
+        if (running && animator.isRunning()) animator.pause();
+    }
+
+    void resume() {
+        if (running && animator.isPaused()) animator.resume();
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /** Краткая сводка счётчиков для логов. */
+    String stats() {
+        return "transitions=" + transitions
+                + " chained=" + chained
+                + " skipped=" + skipped
+                + " frames=" + frames
+                + " lastMs=" + lastTransitionMs
+                + " " + view.drawStats();
+    }
+
+    private void start(int fromState, int toState, long duration) {
+        from = fromState;
+        to = toState;
+        running = true;
+        transitions++;
+        startedAtMs = SystemClock.uptimeMillis();
+        beginJank();
+        animator.setDuration(duration);
+        animator.start();
+    }
+
+    private void stop() {
+        if (!running) return;
+        running = false;
+        animator.cancel();
+        endJank();
+    }
+
+    /*
+     * Трекер общий для всех полос и считает begin/end парами, поэтому цепочка переходов одной полосы
+     * держит ровно одно открытое взаимодействие.
+     */
+    private void beginJank() {
+        if (jankTracker == null || jankOpen) return;
+        jankOpen = true;
+        jankTracker.begin(JankTracker.Interaction.CROSSFADE);
+    }
+
+    private void endJank() {
+        if (!jankOpen) return;
+        jankOpen = false;
+        if (jankTracker != null) jankTracker.end(JankTracker.Interaction.CROSSFADE);
+    }
+
+    @Override
+    public void onAnimationUpdate(ValueAnimator animation) {
+        if (!running) return;
+        frames++;
+        view.setTransition(from, to, (float) animation.getAnimatedValue());
+    }
+
+    @Override
+    public void onAnimationEnd(Animator animation) {
+        if (!running) return;
+        running = false;
+        lastTransitionMs = SystemClock.uptimeMillis() - startedAtMs;
+        view.setState(to);
+        int next = queued;
+        queued = 0;
+        if (next != 0 && next != to) {
+            chained++;
+            start(to, next, chainDurationMs);
+        } else {
+            endJank();
+        }
+    }
+
+    @Override
+    public void onAnimationStart(Animator animation) {}
+
+    @Override
+    public void onAnimationCancel(Animator animation) {}
+
+    @Override
+    public void onAnimationRepeat(Animator animation) {}
+}
@@ -0,0 +1,168 @@
+package com.example.androidbuttons;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Индекс консоли против полного перебора журнала: заполнение сверх ёмкости (вытеснение, подрезка
+ * списков, рехеш и очистка триграмм), поиск по времени и дописывание новых строк в готовый результат
+ * фильтра. Отдельно замеряется запрос по журналу в сотни тысяч строк.
+ */
+public class ConsoleIndexTest {
+
+    private static final String[] WORDS = {
+            "Tx: loco", "Rx: loco", "heartbeat", "TCP error", "Ошибка CRC", "snapshot", "telemetry"
+    };
+
+    @Test
+    public void queries_matchBruteForce_acrossEviction() {
+        Random random = new Random(42);
+        ConsoleLog log = new ConsoleLog(500);
+        List<ConsoleIndex.Query> queries = sampleQueries();
+        long now = 1_000L;
+        for (int round = 0; round < 20; round++) {
+            // Пачки разной длины, время растёт ступенями — у многих строк оно совпадает
+            int batch = 1 + random.nextInt(300);
+            for (int i = 0; i < batch; i++) {
+                appendRandom(log, random, now);
+                if (random.nextInt(8) == 0) now += 1 + random.nextInt(20);
+            }
+            for (ConsoleIndex.Query q : queries) {
+                assertEquals(describe(q) + " after round " + round, bruteForce(log, q), toList(log.index().query(log, q)));
+            }
+            for (long since : new long[] { now - 50, now, now + 1, log.time(0), log.time(log.size() - 1) }) {
+                ConsoleIndex.Query q = new ConsoleIndex.Query(0, 0, false, since, "");
+                assertEquals("sinceMs=" + since, bruteForce(log, q), toList(log.index().query(log, q)));
+            }
+        }
+        assertTrue(log.endSeq() > 5 * log.capacity());
+    }
+
+    @Test
+    public void uniqueTokens_rehashAndSweepForgetEvictedLines() {
+        ConsoleLog log = new ConsoleLog(64);
+        // Каждая строка несёт уникальные триграммы: таблица растёт и переживает несколько очисток
+        int total = 5_000;
+        for (int i = 0; i < total; i++) {
+            log.append("token" + Integer.toString(i, 36) + "#" + Integer.toString(i * 7919, 36), 0, 0, i);
+        }
+        ConsoleIndex.Query evicted = new ConsoleIndex.Query(0, 0, false, 0,
+                "token" + Integer.toString(100, 36) + "#" + Integer.toString(100 * 7919, 36));
+        assertEquals(0, log.index().query(log, evicted).size());
+
+        int last = total - 1;
+        ConsoleIndex.Query live = new ConsoleIndex.Query(0, 0, false, 0,
+                "token" + Integer.toString(last, 36) + "#" + Integer.toString(last * 7919, 36));
+        ConsoleIndex.SeqList found = log.index().query(log, live);
+        assertEquals(1, found.size());
+        assertEquals(last, found.get(0));
+        assertEquals(bruteForce(log, new ConsoleIndex.Query(0, 0, false, 0, "token")),
+                toList(log.index().query(log, new ConsoleIndex.Query(0, 0, false, 0, "token"))));
+    }
+
+    @Test
+    public void extend_keepsFilteredResultEqualToFreshQuery() {
+        for (ConsoleIndex.Query q : sampleQueries()) {
+            ConsoleLog log = new ConsoleLog(300);
+            Random random = new Random(7);
+            for (int i = 0; i < 200; i++) appendRandom(log, random, i);
+            ConsoleIndex.SeqList result = log.index().query(log, q);
+            long now = 200;
+            for (int round = 0; round < 10; round++) {
+                int appended = 1 + random.nextInt(120);
+                List<Integer> before = toList(result);
+                for (int i = 0; i < appended; i++) appendRandom(log, random, now++);
+                int removed = log.index().extend(log, q, result, appended);
+                assertEquals(describe(q), toList(log.index().query(log, q)), toList(result));
+                int expectedRemoved = 0;
+                for (int seq : before) if (seq < log.firstSeq()) expectedRemoved++;
+                assertEquals(expectedRemoved, removed);
+            }
+        }
+    }
+
+    @Test
+    public void query_overLargeLog_takesMilliseconds() {
+        // Ёмкость консоли в приложении — ConsoleLog.MAX_LINES; здесь журнал вчетверо больше
+        int lines = 200_000;
+        ConsoleLog log = new ConsoleLog(lines);
+        Random random = new Random(1);
+        for (int i = 0; i < lines; i++) appendRandom(log, random, i / 10);
+        ConsoleIndex.Query selective = new ConsoleIndex.Query(7, ConsoleLog.TAG_RX, true, 0, "crc");
+        ConsoleIndex.Query text = new ConsoleIndex.Query(0, 0, false, lines / 20, "snapshot");
+
+        long bestSelective = Long.MAX_VALUE;
+        long bestText = Long.MAX_VALUE;
+        for (int r = 0; r < 5; r++) {
+            long start = System.nanoTime();
+            log.index().query(log, selective);
+            bestSelective = Math.min(bestSelective, System.nanoTime() - start);
+            start = System.nanoTime();
+            log.index().query(log, text);
+            bestText = Math.min(bestText, System.nanoTime() - start);
+        }
+        System.out.println(String.format(Locale.US, "query over %d lines: loco+rx+errors+text %.2f ms, text+since %.2f ms",
+                lines, bestSelective / 1e6, bestText / 1e6));
+        assertEquals(bruteForce(log, selective), toList(log.index().query(log, selective)));
+        // Щедрый потолок: полный перебор 200 000 строк с поиском подстроки заметно дольше
+        assertTrue("query took " + bestSelective / 1_000_000 + " ms", bestSelective < 100_000_000L);
+    }
+
+    private static List<ConsoleIndex.Query> sampleQueries() {
+        List<ConsoleIndex.Query> queries = new ArrayList<>();
+        queries.add(new ConsoleIndex.Query(3, 0, false, 0, ""));
+        queries.add(new ConsoleIndex.Query(0, ConsoleLog.TAG_TX, false, 0, ""));
+        queries.add(new ConsoleIndex.Query(0, ConsoleLog.TAG_RX, true, 0, ""));
+        queries.add(new ConsoleIndex.Query(0, ConsoleLog.TAG_TX | ConsoleLog.TAG_RX, false, 0, "loco"));
+        queries.add(new ConsoleIndex.Query(5, ConsoleLog.TAG_RX, false, 0, "state2"));
+        queries.add(new ConsoleIndex.Query(0, 0, false, 0, "ОШИБ"));
+        queries.add(new ConsoleIndex.Query(0, 0, false, 0, "at"));       // короче триграммы
+        queries.add(new ConsoleIndex.Query(0, 0, false, 0, "zzz-none")); // триграммы нет в журнале
+        queries.add(new ConsoleIndex.Query(0, 0, true, 0, "error"));
+        return queries;
+    }
+
+    private static void appendRandom(ConsoleLog log, Random random, long timeMs) {
+        String word = WORDS[random.nextInt(WORDS.length)];
+        int loco = random.nextInt(10);
+        String line = word + (loco > 0 && loco <= 8 ? loco : 0) + " -> state" + random.nextInt(6);
+        int tags = (loco > 0 && loco <= 8 ? loco : 0);
+        if (word.startsWith("Tx")) tags |= ConsoleLog.TAG_TX;
+        if (word.startsWith("Rx") || word.startsWith("Ош")) tags |= ConsoleLog.TAG_RX;
+        if (word.contains("error") || word.contains("Ошибка")) tags |= ConsoleLog.TAG_ERROR;
+        log.append(line, ConsoleLineSplitter.COLOR_DEFAULT, tags, timeMs);
+    }
+
+    private static List<Integer> bruteForce(ConsoleLog log, ConsoleIndex.Query q) {
+        List<Integer> result = new ArrayList<>();
+        for (int position = 0; position < log.size(); position++) {
+            int tags = log.tags(position);
+            if (q.loco > 0 && (tags & ConsoleLog.TAG_LOCO_MASK) != q.loco) continue;
+            if (q.directionMask != 0 && (tags & q.directionMask) == 0) continue;
+            if (q.errorsOnly && (tags & ConsoleLog.TAG_ERROR) == 0) continue;
+            if (q.sinceMs > 0 && log.time(position) < q.sinceMs) continue;
+            if (!q.text.isEmpty()
+                    && !log.text(position).toLowerCase(Locale.ROOT).contains(q.text.toLowerCase(Locale.ROOT))) continue;
+            result.add(log.firstSeq() + position);
+        }
+        return result;
+    }
+
+    private static List<Integer> toList(ConsoleIndex.SeqList list) {
+        List<Integer> result = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) result.add(list.get(i));
+        return result;
+    }
+
+    private static String describe(ConsoleIndex.Query q) {
+        return "loco=" + q.loco + " dir=" + q.directionMask + " errors=" + q.errorsOnly
+                + " since=" + q.sinceMs + " text=\"" + q.text + "\"";
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.androidbuttons;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Бенчмарк отрисовки консоли: сколько стоит разобрать пачку логов и перенести её в журнал в
+ * зависимости от размера пачки. Для сравнения рядом измеряется прежний алгоритм (поиск перевода
+ * строки с нуля и удаление из начала StringBuilder), который растёт квадратично.
+ * Время только печатается таблицей — на загруженной машине оно шумит. Проверяются детерминированные
+ * свойства: каждый символ просматривается один раз, а бэклог любого размера даёт одну пачку.
+ */
+public class ConsoleLineSplitterBenchmarkTest {
+
+    private static final int[] BATCH_SIZES = { 250, 1_000, 4_000, 16_000 };
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void splitter_handlesPrefixesAndRemainder() {
+        ConsoleLineSplitter splitter = new ConsoleLineSplitter();
+        ConsoleLineSplitter.Batch batch = new ConsoleLineSplitter.Batch();
+        assertEquals(1, splitter.feed("[#TCP_TX#]Tx: loco1 -> state2\n[#TCP_RX#]Rx: lo", batch));
+        assertEquals(2, splitter.feed("co3 -> state4\nplain\n", batch));
+        assertEquals(3, batch.size);
+        assertEquals("Tx: loco1 -> state2", batch.lines[0]);
+        assertEquals(0xFF87CEFA, batch.colors[0]);
+        assertEquals(ConsoleLog.TAG_TX | 1, batch.tags[0]);
+        assertEquals("Rx: loco3 -> state4", batch.lines[1]);
+        assertEquals(0xFF0000FF, batch.colors[1]);
+        assertEquals(ConsoleLog.TAG_RX | 3, batch.tags[1]);
+        assertEquals("plain", batch.lines[2]);
+        assertEquals(ConsoleLineSplitter.COLOR_DEFAULT, batch.colors[2]);
+    }
+
+    @Test
+    public void splitter_readsEachCharOnceAndEmitsOneBatch() {
+        for (int size : BATCH_SIZES) {
+            CountingChars backlog = new CountingChars(buildBacklog(size));
+            ConsoleLineSplitter.Batch batch = new ConsoleLineSplitter.Batch();
+            assertEquals(size, new ConsoleLineSplitter().feed(backlog, batch));
+            // Весь бэклог — одна пачка, то есть одна задача для UI-потока
+            assertEquals(size, batch.size);
+            assertEquals("charAt calls for " + size + " lines", backlog.length(), backlog.reads);
+        }
+    }
+
+    @Test
+    public void splitter_chunkedInput_readsEachCharAtMostTwice() {
+        // Хвост без перевода строки копируется в остаток и дочитывается в следующем вызове
+        for (int size : BATCH_SIZES) {
+            CountingChars backlog = new CountingChars(buildBacklog(size));
+            ConsoleLineSplitter splitter = new ConsoleLineSplitter();
+            ConsoleLineSplitter.Batch batch = new ConsoleLineSplitter.Batch();
+            int chunk = 37;
+            for (int off = 0; off < backlog.length(); off += chunk) {
+                splitter.feed(backlog.subSequence(off, Math.min(backlog.length(), off + chunk)), batch);
+            }
+            assertEquals(size, batch.size);
+            assertTrue("charAt calls " + backlog.reads + " for " + backlog.length() + " chars",
+                    backlog.reads <= 2L * backlog.length());
+        }
+    }
+
+    @Test
+    public void renderCost_table() {
+        // Прогрев JIT
+        for (int i = 0; i < 3; i++) {
+            measureSplit(buildBacklog(4_000));
+            measureBatched(buildBacklog(4_000));
+            measureLegacy(buildBacklog(1_000));
+        }
+
+        // split — только разбор; +log — разбор и вставка в журнал с индексом (триграммы, рехеш)
+        System.out.println("lines     split ns/line  +log(ms)  ns/line   legacy(ms)  ns/line");
+        for (int size : BATCH_SIZES) {
+            String backlog = buildBacklog(size);
+            long split = Long.MAX_VALUE;
+            long batched = Long.MAX_VALUE;
+            long legacy = Long.MAX_VALUE;
+            for (int r = 0; r < ROUNDS; r++) {
+                split = Math.min(split, measureSplit(backlog));
+                batched = Math.min(batched, measureBatched(backlog));
+                legacy = Math.min(legacy, measureLegacy(backlog));
+            }
+            System.out.println(String.format(Locale.US, "%-9d %-14.1f %-9.3f %-9.1f %-11.3f %.1f",
+                    size, (double) split / size, batched / 1e6, (double) batched / size,
+                    legacy / 1e6, (double) legacy / size));
+        }
+    }
+
+    private static long measureSplit(String backlog) {
+        ConsoleLineSplitter splitter = new ConsoleLineSplitter();
+        long start = System.nanoTime();
+        ConsoleLineSplitter.Batch batch = new ConsoleLineSplitter.Batch();
+        splitter.feed(backlog, batch);
+        long elapsed = System.nanoTime() - start;
+        assertTrue(batch.size > 0);
+        return elapsed;
+    }
+
+    private static long measureBatched(String backlog) {
+        ConsoleLog log = new ConsoleLog(ConsoleLog.MAX_LINES);
+        ConsoleLineSplitter splitter = new ConsoleLineSplitter();
+        long start = System.nanoTime();
+        ConsoleLineSplitter.Batch batch = new ConsoleLineSplitter.Batch();
+        splitter.feed(backlog, batch);
+        for (int i = 0; i < batch.size; i++) {
+            log.append(batch.lines[i], batch.colors[i], batch.tags[i], batch.timeMs);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(log.size() > 0);
+        return elapsed;
+    }
+
+    /** Прежняя схема appendColored без обращений к TextView: поиск с нуля + delete(0, idx). */
+    private static long measureLegacy(String backlog) {
+        ConsoleLog log = new ConsoleLog(ConsoleLog.MAX_LINES);
+        StringBuilder remainder = new StringBuilder();
+        long start = System.nanoTime();
+        remainder.append(backlog);
+        int idx;
+        while ((idx = legacyIndexOfNewline(remainder)) >= 0) {
+            String line = remainder.substring(0, idx + 1);
+            remainder.delete(0, idx + 1);
+            log.append(line, ConsoleLineSplitter.COLOR_DEFAULT, 0, 0L);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(log.size() > 0);
+        return elapsed;
+    }
+
+    private static int legacyIndexOfNewline(StringBuilder sb) {
+        for (int i = 0; i < sb.length(); i++) {
+            if (sb.charAt(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    /** Текст, считающий обращения к charAt; подпоследовательности — тоже счётчики того же текста. */
+    private static final class CountingChars implements CharSequence {
+        private final String text;
+        private final int offset;
+        private final int length;
+        private final CountingChars root;
+        long reads;
+
+        CountingChars(String text) {
+            this(text, 0, text.length(), null);
+        }
+
+        private CountingChars(String text, int offset, int length, CountingChars root) {
+            this.text = text;
+            this.offset = offset;
+            this.length = length;
+            this.root = root != null ? root : this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            root.reads++;
+            return text.charAt(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new CountingChars(text, offset + start, end - start, root);
+        }
+
+        @Override
+        public String toString() {
+            // Копирование строки одним блоком — без charAt, как у String
+            return text.substring(offset, offset + length);
+        }
+    }
+
+    private static String buildBacklog(int lines) {
+        StringBuilder sb = new StringBuilder(lines * 32);
+        for (int i = 0; i < lines; i++) {
+            int loco = (i % 8) + 1;
+            int state = (i % 5) + 1;
+            sb.append((i & 1) == 0 ? "[#TCP_TX#]Tx: loco" : "[#TCP_RX#]Rx: loco")
+                    .append(loco).append(" -> state").append(state).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.androidbuttons;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.WindowManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowSettings;
+import org.robolectric.shadows.ShadowWindowManagerImpl;
+
+import java.time.Duration;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Производительность полосы overlay без устройства: сервис прикрепляет окно в Robolectric, после
+ * чего полоса получает пачки состояний из «потока TCP» и серии касаний. Проверяются бюджет времени
+ * и число задач главного потока: при слиянии состояний оно не должно зависеть от длины пачки.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class OverlayStatePerfTest {
+
+    private static final int SMALL_BURST = 10;
+    private static final int LARGE_BURST = 1_000;
+    private static final int TAPS = 200;
+
+    /** Публикация пачки из LARGE_BURST состояний и её применение на главном потоке, мс. */
+    private static final long STATE_BURST_BUDGET_MS = 300;
+    /** Серия из TAPS касаний полосы, мс. */
+    private static final long TAP_BURST_BUDGET_MS = 300;
+
+    private ServiceController<FloatingOverlayService> controller;
+    private SignalStripView strip;
+
+    @Before
+    public void setUp() {
+        ShadowSettings.setCanDrawOverlays(true);
+        Context context = RuntimeEnvironment.getApplication();
+        AppConfig.init(context);
+        AppConfig.edit().setOverlayAllowModification(false).apply();
+
+        Intent boot = new Intent(context, FloatingOverlayService.class)
+                .setAction(FloatingOverlayService.ACTION_FAST_BOOT);
+        controller = Robolectric.buildService(FloatingOverlayService.class, boot).create().startCommand(0, 1);
+        runPendingMainTasks();
+        strip = findStrip(controller.get());
+        assertNotNull("overlay strip not attached", strip);
+        if (strip.getHeight() <= 0) {
+            strip.layout(0, 0, 100, 430);
+        }
+        settleAnimations();
+    }
+
+    @After
+    public void tearDown() {
+        controller.destroy();
+    }
+
+    @Test
+    public void stateBurst_mainThreadTasksDoNotGrowWithBurst() throws Exception {
+        // Обе пачки должны завершаться реальной сменой состояния, поэтому стартуем с известного
+        publishBurstFromWorker(1, 1);
+        settleAnimations();
+        int small = publishBurstFromWorker(SMALL_BURST, 2);
+        settleAnimations();
+        int large = publishBurstFromWorker(LARGE_BURST, 4);
+        assertEquals("main thread tasks for " + SMALL_BURST + " vs " + LARGE_BURST + " states", small, large);
+        settleAnimations();
+        assertEquals(4, strip.getState());
+    }
+
+    @Test
+    public void stateBurst_appliedWithinBudget() throws Exception {
+        publishBurstFromWorker(SMALL_BURST, 2); // прогрев
+        settleAnimations();
+
+        long start = System.nanoTime();
+        publishBurstFromWorker(LARGE_BURST, 3);
+        long elapsedNs = System.nanoTime() - start;
+        System.out.println(String.format(Locale.US, "state burst %d: %.1f ms", LARGE_BURST, elapsedNs / 1e6));
+        assertTrue("state burst took " + elapsedNs / 1_000_000 + " ms > " + STATE_BURST_BUDGET_MS,
+                elapsedNs <= STATE_BURST_BUDGET_MS * 1_000_000);
+    }
+
+    @Test
+    public void tapBurst_withinBudgetAndBoundedTasks() {
+        int small = tapBurst(SMALL_BURST);
+        settleAnimations();
+
+        long start = System.nanoTime();
+        int large = tapBurst(TAPS);
+        long elapsedNs = System.nanoTime() - start;
+        System.out.println(String.format(Locale.US, "tap burst %d: %.1f ms, %d main tasks",
+                TAPS, elapsedNs / 1e6, large));
+        assertEquals("main thread tasks for " + SMALL_BURST + " vs " + TAPS + " taps", small, large);
+        assertTrue("tap burst took " + elapsedNs / 1_000_000 + " ms > " + TAP_BURST_BUDGET_MS,
+                elapsedNs <= TAP_BURST_BUDGET_MS * 1_000_000);
+
+        settleAnimations();
+        int lastZone = (TAPS - 1) % 2 == 0 ? 2 : 4;
+        assertEquals(lastZone, strip.getState());
+    }
+
+    /**
+     * Публикует count состояний с фонового потока (как обработчик RX), заканчивая finalState, и
+     * выполняет задачи, дошедшие до главного потока. Возвращает число этих задач.
+     */
+    private static int publishBurstFromWorker(int count, int finalState) throws InterruptedException {
+        Thread worker = new Thread(() -> {
+            for (int i = count - 1; i >= 0; i--) {
+                StateBus.publishStripState(i == 0 ? finalState : 1 + i % SignalStripView.LAMP_COUNT);
+            }
+        }, "rx-burst");
+        worker.start();
+        worker.join();
+        return runPendingMainTasks();
+    }
+
+    /** Серия касаний (ACTION_UP) попеременно по зонам 2 и 4; возвращает число задач главного потока. */
+    private int tapBurst(int taps) {
+        float zoneHeight = strip.getHeight() / (float) SignalStripView.LAMP_COUNT;
+        long now = SystemClock.uptimeMillis();
+        for (int i = 0; i < taps; i++) {
+            int zone = i % 2 == 0 ? 2 : 4;
+            MotionEvent up = MotionEvent.obtain(now, now, MotionEvent.ACTION_UP,
+                    strip.getWidth() / 2f, (zone - 0.5f) * zoneHeight, 0);
+            strip.dispatchTouchEvent(up);
+            up.recycle();
+        }
+        return runPendingMainTasks();
+    }
+
+    private static SignalStripView findStrip(Context context) {
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        ShadowWindowManagerImpl shadow = Shadow.extract(windowManager);
+        for (View root : shadow.getViews()) {
+            View strip = root.findViewById(R.id.overlayStateStrip);
+            if (strip instanceof SignalStripView) return (SignalStripView) strip;
+        }
+        return null;
+    }
+
+    /** Прокручивает время вперёд, чтобы завершились переходы полосы и их цепочки. */
+    private static void settleAnimations() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(2));
+    }
+
+    /** Выполняет готовые к запуску задачи главного потока и возвращает их число. */
+    private static int runPendingMainTasks() {
+        ShadowLooper looper = shadowOf(Looper.getMainLooper());
+        int tasks = 0;
+        while (!looper.isIdle()) {
+            looper.runOneTask();
+            tasks++;
+        }
+        return tasks;
+    }
+}
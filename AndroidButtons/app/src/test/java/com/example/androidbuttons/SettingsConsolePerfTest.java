@@ -0,0 +1,138 @@
+package com.example.androidbuttons;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Производительность консоли экрана настроек без устройства: очередь лога с бэклогом в 10 000 строк
+ * сливается так же, как это делает таймер экрана, а затем пачка применяется на главном потоке
+ * Robolectric. Проверяются бюджет времени разбора и применения и число задач, отправленных в
+ * UI-поток: оно не должно зависеть от размера бэклога. Тест наполняет собственную очередь, чтобы
+ * таймер экрана её не перехватил.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SettingsConsolePerfTest {
+
+    private static final int BACKLOG_LINES = 10_000;
+    private static final int ROUNDS = 3;
+
+    /** Разбор бэклога на потоке таймера, мс (лучший из прогонов). */
+    private static final long PARSE_BUDGET_MS = 150;
+    /** Перенос пачки в журнал и проход раскладки RecyclerView на главном потоке, мс. */
+    private static final long APPLY_BUDGET_MS = 300;
+
+    private final Queue<String> queue = new ArrayDeque<>();
+    private ActivityController<SettingsActivity> controller;
+    private SettingsActivity activity;
+
+    @Before
+    public void setUp() {
+        controller = Robolectric.buildActivity(SettingsActivity.class).setup();
+        activity = controller.get();
+        runPendingMainTasks();
+    }
+
+    @After
+    public void tearDown() {
+        controller.pause().stop().destroy();
+    }
+
+    @Test
+    public void backlog_postsSingleUiTaskRegardlessOfSize() {
+        List<Runnable> smallPosts = drainBacklog(10);
+        List<Runnable> largePosts = drainBacklog(BACKLOG_LINES);
+        assertEquals(1, smallPosts.size());
+        assertEquals("UI tasks for " + BACKLOG_LINES + " lines", 1, largePosts.size());
+
+        int before = activity.consoleLineCount();
+        largePosts.get(0).run();
+        int layoutTasks = runPendingMainTasks();
+        assertEquals(before + BACKLOG_LINES, activity.consoleLineCount());
+
+        // Проход раскладки после пачки не должен порождать цепочку задач пропорционально строкам
+        smallPosts.get(0).run();
+        int smallLayoutTasks = runPendingMainTasks();
+        assertTrue("layout tasks " + layoutTasks + " vs " + smallLayoutTasks,
+                layoutTasks <= Math.max(smallLayoutTasks, 1) + 1);
+    }
+
+    @Test
+    public void backlog_parsesAndAppliesWithinBudget() {
+        // Прогрев загрузки классов и JIT
+        drainBacklog(1_000).forEach(Runnable::run);
+        runPendingMainTasks();
+
+        long bestParseNs = Long.MAX_VALUE;
+        long bestApplyNs = Long.MAX_VALUE;
+        for (int r = 0; r < ROUNDS; r++) {
+            fillQueue(BACKLOG_LINES);
+            List<Runnable> posts = new ArrayList<>();
+            long start = System.nanoTime();
+            activity.drainConsoleQueue(queue, posts::add);
+            bestParseNs = Math.min(bestParseNs, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (Runnable post : posts) post.run();
+            runPendingMainTasks();
+            bestApplyNs = Math.min(bestApplyNs, System.nanoTime() - start);
+        }
+        System.out.println(String.format(Locale.US, "console %d lines: parse %.1f ms, apply %.1f ms",
+                BACKLOG_LINES, bestParseNs / 1e6, bestApplyNs / 1e6));
+        assertTrue("parse took " + bestParseNs / 1_000_000 + " ms > " + PARSE_BUDGET_MS,
+                bestParseNs <= PARSE_BUDGET_MS * 1_000_000);
+        assertTrue("apply took " + bestApplyNs / 1_000_000 + " ms > " + APPLY_BUDGET_MS,
+                bestApplyNs <= APPLY_BUDGET_MS * 1_000_000);
+    }
+
+    /** Кладёт бэклог в очередь и сливает его, собирая задачи для UI-потока вместо отправки. */
+    private List<Runnable> drainBacklog(int lines) {
+        fillQueue(lines);
+        List<Runnable> posts = new ArrayList<>();
+        activity.drainConsoleQueue(queue, posts::add);
+        return posts;
+    }
+
+    // Строки приходят кусками, как из DataBuffer: по несколько строк на сообщение
+    private void fillQueue(int lines) {
+        StringBuilder chunk = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            int loco = (i % 8) + 1;
+            chunk.append((i & 1) == 0 ? "[#TCP_TX#]Tx: loco" : "[#TCP_RX#]Rx: loco")
+                    .append(loco).append(" -> state").append((i % 5) + 1).append('\n');
+            if (i % 16 == 15) {
+                queue.offer(chunk.toString());
+                chunk.setLength(0);
+            }
+        }
+        if (chunk.length() > 0) queue.offer(chunk.toString());
+    }
+
+    /** Выполняет готовые к запуску задачи главного потока и возвращает их число. */
+    private static int runPendingMainTasks() {
+        ShadowLooper looper = shadowOf(Looper.getMainLooper());
+        int tasks = 0;
+        while (!looper.isIdle()) {
+            looper.runOneTask();
+            tasks++;
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,30 @@
+// JMH-бенчмарки горячих путей :core (кадры протокола, разбор RX, буфер консоли, шина состояний).
+// Запуск: ./gradlew :benchmarks:jmh — результаты с профилировщиком gc (аллокации на операцию)
+// пишутся в build/results/jmh/results.json для сравнения между релизами.
+plugins {
+    `java`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    jmh(project(":core"))
+    jmh(libs.jmh.core)
+    jmhAnnotationProcessor(libs.jmh.generator.annprocess)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    // Фильтр по имени: ./gradlew :benchmarks:jmh -PjmhInclude=FrameDecoder
+    providers.gradleProperty("jmhInclude").orNull?.let { includes.set(listOf(it)) }
+}
@@ -0,0 +1,49 @@
+package com.example.androidbuttons;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сборка управляющего кадра и CRC-8 — путь каждой команды от кнопки до сокета.
+ * Аллокации на операцию смотреть в колонке gc.alloc.rate.norm.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ControlFrameBenchmark {
+
+    private int loco;
+    private int state;
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        loco = 3;
+        state = 4;
+        // Заголовок + 64 байта данных: верхняя оценка для кадров протокола
+        payload = new byte[3 + 64];
+        for (int i = 0; i < payload.length; i++) payload[i] = (byte) (i * 31);
+    }
+
+    @Benchmark
+    public byte[] buildControlFrame() {
+        return ControlFrameCodec.buildControlFrame(loco, state);
+    }
+
+    @Benchmark
+    public byte crc8Control() {
+        return ControlFrameCodec.crc8(payload, 0, 4);
+    }
+
+    @Benchmark
+    public byte crc8Payload64() {
+        return ControlFrameCodec.crc8(payload, 0, payload.length);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.androidbuttons;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Буфер консоли {@link DataBuffer}: постановка строк RX в очередь и синхронный слив блоком.
+ * Одна операция — {@link #BATCH} вызовов offer и один flush, как за тик таймера при плотном
+ * потоке. Таймер буфера продолжает работать в фоне и изредка сливает очередь сам.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DataBufferBenchmark {
+
+    static final int BATCH = 32;
+
+    private DataBuffer buffer;
+    private Blackhole sink;
+    private final String line = "[#TCP_RX#]Rx: loco3 -> state4\n";
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+        sink = blackhole;
+        buffer = new DataBuffer(4096, s -> sink.consume(s));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        buffer.close();
+    }
+
+    @Benchmark
+    public void offer() {
+        buffer.offer(line);
+        // Без слива очередь росла бы всю итерацию и мерила бы GC, а не offer
+        buffer.flush();
+    }
+
+    @Benchmark
+    public void offerBatchAndFlush() {
+        for (int i = 0; i < BATCH; i++) {
+            buffer.offer(line);
+        }
+        buffer.flush();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.androidbuttons;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор входящего потока {@link FrameDecoder} (внутри — drainFrames) на трёх видах входа:
+ * <ul>
+ *   <li>{@code clean} — пачка кадров подряд одним чтением из сокета;</li>
+ *   <li>{@code fragmented} — тот же поток, нарезанный на куски по 3 байта, как при медленном канале;</li>
+ *   <li>{@code garbage} — кадры вперемешку с шумом, ложными стартовыми байтами и битыми CRC.</li>
+ * </ul>
+ * Одна операция — разбор всего потока из {@link #FRAMES} кадров.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FrameDecoderBenchmark {
+
+    static final int FRAMES = 64;
+    private static final int FRAGMENT = 3;
+
+    @Param({"clean", "fragmented", "garbage"})
+    public String input;
+
+    private byte[] stream;
+    private int chunk;
+    private FrameDecoder decoder;
+    private Blackhole sink;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        sink = blackhole;
+        Random random = new Random(42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < FRAMES; i++) {
+            if ("garbage".equals(input)) {
+                writeNoise(out, random);
+            }
+            int loco = ControlFrameCodec.LOCO_MIN + i % ControlFrameCodec.LOCO_MAX;
+            int state = ControlFrameCodec.STATE_MIN + i % ControlFrameCodec.STATE_MAX;
+            byte[] frame = ControlFrameCodec.buildControlFrame(loco, state);
+            out.write(frame, 0, frame.length);
+        }
+        stream = out.toByteArray();
+        chunk = "fragmented".equals(input) ? FRAGMENT : stream.length;
+        decoder = new FrameDecoder((cmd, buf, dataOff, len) -> sink.consume(buf[dataOff]));
+    }
+
+    @Benchmark
+    public int decode() {
+        for (int off = 0; off < stream.length; off += chunk) {
+            decoder.feed(stream, off, Math.min(chunk, stream.length - off));
+        }
+        int pending = decoder.pending();
+        decoder.reset();
+        return pending;
+    }
+
+    // Шум: случайные байты, ложный старт с огромной длиной и кадр с испорченной CRC
+    private static void writeNoise(ByteArrayOutputStream out, Random random) {
+        for (int n = 0; n < 8; n++) {
+            int b = random.nextInt(256);
+            out.write(b == (ControlFrameCodec.START & 0xFF) ? 0 : b);
+        }
+        out.write(ControlFrameCodec.START);
+        out.write(0x01);
+        out.write(0xFF);
+        out.write(0xFF);
+        byte[] broken = ControlFrameCodec.buildControlFrame(1, 1);
+        broken[broken.length - 1] ^= 0x5A;
+        out.write(broken, 0, broken.length);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.androidbuttons;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор текстовых строк RX, которые TcpManager отдаёт в onData без RxFrameListener (прежний путь
+ * MainActivity, для сравнения): блок режется по переводу строки, из каждой строки извлекаются поля
+ * loco= и state=. Одна операция — блок из {@link #LINES} строк, включая строки неизвестных кадров
+ * без этих полей.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RxLineParseBenchmark {
+
+    static final int LINES = 32;
+
+    private String block;
+    private String line;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            int loco = 1 + i % 8;
+            if (i % 8 == 7) {
+                sb.append("cmd=0x07 len=2 data=01 02\n");
+            } else {
+                sb.append("cmd=0x0").append(loco).append(" loco=").append(loco)
+                        .append(" state=").append(1 + i % 6).append('\n');
+            }
+        }
+        block = sb.toString();
+        line = "cmd=0x03 loco=3 state=4";
+    }
+
+    /** Только извлечение полей из одной готовой строки — без split и trim. */
+    @Benchmark
+    public int parseFields() {
+        return ControlFrameCodec.parseDecimalField(line, "loco=") * 8
+                + ControlFrameCodec.parseDecimalField(line, "state=");
+    }
+
+    /** Полный путь блока: split, trim и два поля на строку. */
+    @Benchmark
+    public void parseBlock(Blackhole bh) {
+        String[] lines = block.split("\n");
+        for (String raw : lines) {
+            String ln = raw.trim();
+            if (ln.isEmpty()) continue;
+            int loco = ControlFrameCodec.parseDecimalField(ln, "loco=");
+            if (loco <= 0) continue;
+            bh.consume(loco);
+            bh.consume(ControlFrameCodec.parseDecimalField(ln, "state="));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.androidbuttons;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Публикация состояния полосы через {@link StateBus} с 1, 4 и 16 синхронными подписчиками.
+ * Состояние чередуется, чтобы каждая публикация действительно доходила до слушателей.
+ * StateBus статичен, поэтому подписчики снимаются в конце каждого прогона.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StateBusBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int listeners;
+
+    private StateBus.StripStateListener[] registered;
+    private int state = 1;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+        registered = new StateBus.StripStateListener[listeners];
+        for (int i = 0; i < listeners; i++) {
+            registered[i] = blackhole::consume;
+            StateBus.registerStateListener(registered[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (StateBus.StripStateListener listener : registered) {
+            StateBus.unregisterStateListener(listener);
+        }
+    }
+
+    @Benchmark
+    public void publishStripState() {
+        state = state == 1 ? 2 : 1;
+        StateBus.publishStripState(state);
+    }
+
+    @Benchmark
+    public boolean publishStripStateVersioned() {
+        state = state == 1 ? 2 : 1;
+        return StateBus.publishStripState(state, StateBus.nextVersion());
+    }
+}
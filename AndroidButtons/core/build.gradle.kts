@@ -0,0 +1,14 @@
+// Чистая Java-логика без Android API: транспорт, кадры протокола, буферы и шина состояний.
+// Собирается и тестируется на обычной JVM; :app подключает модуль как зависимость.
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -23,8 +23,9 @@ public final class AppState {
     public static final LinkedBlockingQueue<String> consoleQueue = new LinkedBlockingQueue<>();
 
     /**
-     * Название файла SharedPreferences и ключи настроек сети. Используются как в
-     * SettingsActivity для записи, так и в MainActivity при первичной инициализации компонентов.
+     * Название файла SharedPreferences и ключи настроек сети. Сами настройки теперь хранит
+     * AppConfig/SettingsStore; файл prefs читается только для переноса значений при первом запуске,
+     * а ключи используются как имена extra в broadcast-уведомлениях.
      */
     public static final String PREFS_NAME = "androidbuttons_prefs";
     public static final String KEY_TCP_HOST = "tcp_host";
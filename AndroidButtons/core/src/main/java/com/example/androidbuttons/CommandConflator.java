@@ -0,0 +1,93 @@
+package com.example.androidbuttons;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Слияние команд управления между выбором в overlay и TX-путём. Первая команда локомотива после
+ * паузы уходит сразу (быстрый путь для одиночного касания) и открывает окно успокоения. Команды,
+ * пришедшие внутри окна, не отправляются, а лишь заменяют ожидающее состояние этого локомотива;
+ * по истечении окна уходит только последнее, если оно отличается от уже отправленного. Поэтому
+ * протяжка пальцем от зелёного к красному даёт один-два кадра вместо пяти.
+ */
+public final class CommandConflator {
+
+    /**
+     * Получатель команд, прошедших слияние. Всегда вызывается на потоке конфлатора — и для быстрого
+     * пути, и по окну, — поэтому реализации не обязаны быть потокобезопасными и получают команды
+     * в порядке отправки.
+     */
+    public interface Sender { void send(int loco, int state); }
+
+    /** Окно успокоения по умолчанию. */
+    public static final long DEFAULT_SETTLE_MS = 150L;
+
+    private final Sender sender;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "cmd-conflator");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Индекс = номер локомотива
+    private final int[] pendingState = new int[StateBus.LOCO_COUNT + 1];
+    private final int[] sentState = new int[StateBus.LOCO_COUNT + 1];
+    private final long[] windowEndNs = new long[StateBus.LOCO_COUNT + 1];
+    private final boolean[] flushScheduled = new boolean[StateBus.LOCO_COUNT + 1];
+    private volatile long settleNs = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SETTLE_MS);
+
+    public CommandConflator(Sender sender) {
+        this.sender = sender;
+    }
+
+    /** Задаёт длительность окна успокоения (0 — без слияния, каждая команда уходит сразу). */
+    public void setSettleWindowMs(long ms) {
+        settleNs = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, ms));
+    }
+
+    /**
+     * Принимает команду. Вне окна успокоения она уходит сразу, внутри окна — запоминается как
+     * последняя для своего локомотива.
+     */
+    public void submit(int loco, int state) {
+        if (loco < 1 || loco > StateBus.LOCO_COUNT) return;
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (now - windowEndNs[loco] >= 0 && !flushScheduled[loco]) {
+                // Быстрый путь: окно закрыто — отправляем и открываем новое окно. Отправка тоже идёт
+                // через поток конфлатора (вызывающий — UI/касание — её не ждёт); постановка под
+                // блокировкой сохраняет порядок команд между вызывающими потоками
+                sentState[loco] = state;
+                pendingState[loco] = 0;
+                windowEndNs[loco] = now + settleNs;
+                scheduler.execute(() -> sender.send(loco, state));
+            } else {
+                pendingState[loco] = state;
+                if (!flushScheduled[loco]) {
+                    flushScheduled[loco] = true;
+                    scheduler.schedule(() -> flush(loco), windowEndNs[loco] - now, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+
+    /** Останавливает поток конфлатора; неотправленные ожидающие команды отбрасываются. */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void flush(int loco) {
+        int state;
+        synchronized (this) {
+            flushScheduled[loco] = false;
+            state = pendingState[loco];
+            pendingState[loco] = 0;
+            if (state == 0 || state == sentState[loco]) return;
+            sentState[loco] = state;
+            // Отправленная по окну команда открывает следующее окно: продолжение жеста снова сливается
+            windowEndNs[loco] = System.nanoTime() + settleNs;
+        }
+        sender.send(loco, state);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.androidbuttons;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Привязывает входящие состояния к исходящим командам. Пока команда локомотива ждёт подтверждения
+ * (эха с тем же состоянием или ACK), RX-кадры с другим состоянием описывают железо до команды: им не
+ * выдаётся новая версия, иначе запоздавшее эхо старого состояния обгоняло бы касание. Эхо команды
+ * публикуется с версией самой команды. ACK команды закрывает ожидание сразу: кадры идут по TCP по
+ * порядку, и всё, что пришло после ACK, железо отправило уже после команды — например, красный,
+ * выставленный диспетчером, — и принимается. Если подтверждения нет за
+ * {@link #DEFAULT_ECHO_TIMEOUT_MS}, железо считается ответившим иначе и RX снова принимается как есть.
+ * Каждый отброшенный кадр вызывающий должен показать оператору (см. {@link #pendingState}).
+ */
+public final class CommandEchoFilter {
+
+    /** Сколько команда ждёт эха, прежде чем RX снова принимается без проверки. */
+    public static final long DEFAULT_ECHO_TIMEOUT_MS = 2000L;
+
+    // Индекс = номер локомотива; состояние 0 — команда не ожидает эха
+    private final int[] pendingState = new int[StateBus.LOCO_COUNT + 1];
+    private final int[] pendingVersion = new int[StateBus.LOCO_COUNT + 1];
+    // Монотонное время постановки: коррекция часов (NTP) не должна продлевать или обрывать ожидание
+    private final long[] pendingSinceNs = new long[StateBus.LOCO_COUNT + 1];
+    private final long timeoutNs;
+    private long staleDropped = 0;
+
+    public CommandEchoFilter() {
+        this(DEFAULT_ECHO_TIMEOUT_MS);
+    }
+
+    public CommandEchoFilter(long timeoutMs) {
+        this.timeoutNs = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, timeoutMs));
+    }
+
+    /** Запоминает команду, принятую StateBus с версией касания, как ожидающую эха. */
+    public synchronized void onCommand(int loco, int state, int version) {
+        if (loco < 1 || loco > StateBus.LOCO_COUNT || state <= 0) return;
+        pendingState[loco] = state;
+        pendingVersion[loco] = version;
+        pendingSinceNs[loco] = System.nanoTime();
+    }
+
+    /**
+     * ACK железа: если он подтверждает ожидающую команду, ожидание снимается и следующие RX-кадры
+     * принимаются как есть. ACK прежней команды ожидание не снимает.
+     */
+    public synchronized void onAck(int loco, int state) {
+        if (loco < 1 || loco > StateBus.LOCO_COUNT) return;
+        if (pendingState[loco] != 0 && pendingState[loco] == state) pendingState[loco] = 0;
+    }
+
+    /** Состояние команды локомотива, ожидающей подтверждения, или 0. */
+    public synchronized int pendingState(int loco) {
+        if (loco < 1 || loco > StateBus.LOCO_COUNT) return 0;
+        return pendingState[loco];
+    }
+
+    /**
+     * Версия для уже проверенного RX-состояния локомотива. Эхо ожидающей команды получает её версию
+     * и снимает ожидание; состояние, отличное от ожидающей команды, отбрасывается (возвращается 0);
+     * без ожидающей команды выдаётся новая версия.
+     */
+    public synchronized int versionForRx(int loco, int state) {
+        if (loco < 1 || loco > StateBus.LOCO_COUNT) return StateBus.nextVersion();
+        int pending = pendingState[loco];
+        if (pending != 0 && System.nanoTime() - pendingSinceNs[loco] > timeoutNs) {
+            pendingState[loco] = 0;
+            pending = 0;
+        }
+        if (pending == 0) return StateBus.nextVersion();
+        if (pending == state) {
+            pendingState[loco] = 0;
+            return pendingVersion[loco];
+        }
+        staleDropped++;
+        return 0;
+    }
+
+    /** RX-кадров, отброшенных как предшествующие ожидающей команде. */
+    public synchronized long staleDropped() {
+        return staleDropped;
+    }
+}
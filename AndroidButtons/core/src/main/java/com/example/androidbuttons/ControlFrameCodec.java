@@ -0,0 +1,134 @@
+package com.example.androidbuttons;
+
+import java.util.Locale;
+
+/**
+ * Кадры протокола управления: 0x7E | cmd(1) | len(2 BE) | data(N) | crc8(cmd+len+data). Кадр
+ * управления несёт в cmd номер локомотива и один байт состояния; служебные кадры используют коды
+ * команд вне диапазона локомотивов. Здесь же разбор текстовых строк RX («cmd=0x01 loco=1 state=3»),
+ * которые TcpManager отдаёт верхнему уровню.
+ */
+public final class ControlFrameCodec {
+
+    public static final byte START = 0x7E;
+    /** Заголовок и хвост кадра: START + cmd + длина (2 байта) + crc. */
+    public static final int OVERHEAD = 5;
+    /** Максимальная длина данных; всё длиннее считается мусором в потоке. */
+    public static final int MAX_PAYLOAD = 4096;
+    /** Длина кадра управления: служебные байты и один байт состояния. */
+    public static final int CONTROL_FRAME_LENGTH = OVERHEAD + 1;
+
+    public static final int LOCO_MIN = 1;
+    public static final int LOCO_MAX = 8;
+    public static final int STATE_MIN = 1;
+    public static final int STATE_MAX = 6;
+
+    /** Служебные команды (RX). Данные: heartbeat — пусто; ACK — loco, state; batch — пары loco, state. */
+    public static final int CMD_HEARTBEAT = 0x40;
+    public static final int CMD_ACK = 0x41;
+    /** Телеметрия: произвольные данные, которые пока только выводятся в консоль. */
+    public static final int CMD_TELEMETRY = 0x42;
+    public static final int CMD_BATCH = 0x43;
+    /**
+     * Запрос снимка (TX, без данных) и ответ на него (RX): LOCO_MAX байт — состояния локомотивов
+     * 1..LOCO_MAX по порядку, 0 — состояние неизвестно.
+     */
+    public static final int CMD_SNAPSHOT_REQUEST = 0x44;
+    public static final int CMD_SNAPSHOT = 0x45;
+
+    private ControlFrameCodec() {}
+
+    /**
+     * Собирает кадр управления: START (0x7E) | loco | длина | данные | crc8. Номер локомотива и
+     * состояние приводятся к допустимому диапазону.
+     */
+    public static byte[] buildControlFrame(int loco, int state) {
+        byte[] frame = new byte[CONTROL_FRAME_LENGTH];
+        encodeControlFrame(loco, state, frame, 0);
+        return frame;
+    }
+
+    /**
+     * То же, что {@link #buildControlFrame}, но кадр пишется в буфер вызывающего с позиции off —
+     * без выделения памяти на каждую команду.
+     *
+     * @return число записанных байт ({@link #CONTROL_FRAME_LENGTH})
+     */
+    public static int encodeControlFrame(int loco, int state, byte[] dst, int off) {
+        int l = Math.max(LOCO_MIN, Math.min(LOCO_MAX, loco));
+        int st = Math.max(STATE_MIN, Math.min(STATE_MAX, state));
+        dst[off] = START;
+        dst[off + 1] = (byte) (l & 0xFF);
+        dst[off + 2] = 0;
+        dst[off + 3] = 1;
+        dst[off + 4] = (byte) st;
+        dst[off + 5] = crc8(dst, off + 1, 4);
+        return CONTROL_FRAME_LENGTH;
+    }
+
+    /**
+     * Пишет в dst с позиции off кадр команды без данных (например, {@link #CMD_SNAPSHOT_REQUEST}).
+     *
+     * @return число записанных байт ({@link #OVERHEAD})
+     */
+    public static int encodeEmptyFrame(int cmd, byte[] dst, int off) {
+        dst[off] = START;
+        dst[off + 1] = (byte) cmd;
+        dst[off + 2] = 0;
+        dst[off + 3] = 0;
+        dst[off + 4] = crc8(dst, off + 1, 3);
+        return OVERHEAD;
+    }
+
+    /**
+     * Подсчёт CRC8 с полиномом 0x31 (как на стороне железа). Используем тот же алгоритм, что и в
+     * прошивке, чтобы обеспечить совместимость.
+     */
+    public static byte crc8(byte[] buf, int off, int len) {
+        int crc = 0x00;
+        for (int i = off; i < off + len; i++) {
+            crc ^= (buf[i] & 0xFF);
+            for (int b = 0; b < 8; b++) {
+                if ((crc & 0x80) != 0) crc = ((crc << 1) ^ 0x31) & 0xFF; else crc = (crc << 1) & 0xFF;
+            }
+        }
+        return (byte) (crc & 0xFF);
+    }
+
+    public static String toHex(byte[] buf, int off, int len) {
+        StringBuilder sb = new StringBuilder(len * 3);
+        for (int i = 0; i < len; i++) {
+            sb.append(String.format(Locale.US, "%02X", buf[off + i] & 0xFF));
+            if (i + 1 < len) sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Десятичное значение сразу после token в строке RX (например, token "state=") или -1, если
+     * токена нет или за ним не цифры.
+     */
+    public static int parseDecimalField(String line, String token) {
+        if (line == null || token == null) {
+            return -1;
+        }
+        int idx = line.indexOf(token);
+        if (idx < 0) {
+            return -1;
+        }
+        int pos = idx + token.length();
+        int value = 0;
+        boolean has = false;
+        while (pos < line.length()) {
+            char c = line.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                has = true;
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return has ? value : -1;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.androidbuttons;
+
+/**
+ * Канал отправки команд управления железу. Реализуется {@link TcpManager}; верхний уровень
+ * (MainActivity, конфлатор команд, тесты) зависит только от этого интерфейса.
+ */
+public interface ControlTransport {
+    /**
+     * Асинхронно отправляет кадр управления. Без соединения команда не теряется: она ждёт в outbox
+     * (последняя на локомотив, с ограниченным сроком жизни) и уходит при следующем подключении.
+     */
+    void sendControl(int loco, int state);
+
+    boolean isConnected();
+}
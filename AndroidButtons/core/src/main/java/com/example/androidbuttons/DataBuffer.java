@@ -6,21 +6,26 @@ import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Буферизатор коротких строк, отправляемых в консоль. Позволяет сгруппировать сообщения и
- * уменьшить количество обращений к UI-потоку.
+ * уменьшить количество обращений к UI-потоку. Строки горячих путей RX/TX пишутся без выделений
+ * в {@link #lines()} и сливаются тем же таймером.
  */
-class DataBuffer implements AutoCloseable {
+public class DataBuffer implements AutoCloseable {
     /**
      * Минимальный функциональный интерфейс для «потребителя» буфера. Реализация передаётся при
      * создании (см. MainActivity), и вызывается на рабочем потоке таймера.
      */
-    interface StringConsumer { void accept(String s); }
+    public interface StringConsumer { void accept(String s); }
+
+    /** Ёмкость буфера строк горячих путей: с запасом на 100 мс потока кадров. */
+    static final int LINE_BUFFER_CHARS = 16 * 1024;
 
     private final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private final LogLineBuffer lines = new LogLineBuffer(LINE_BUFFER_CHARS);
     private final int maxFlushBytes;
     private final StringConsumer consumer;
     private final Timer timer = new Timer("ui-buf", true);
 
-    DataBuffer(int maxFlushBytes, StringConsumer consumer) {
+    public DataBuffer(int maxFlushBytes, StringConsumer consumer) {
         // Гарантируем минимальную ёмкость, чтобы не выстраивать слишком мелкие пакеты.
         this.maxFlushBytes = Math.max(64, maxFlushBytes);
         this.consumer = consumer;
@@ -31,16 +36,26 @@ class DataBuffer implements AutoCloseable {
         }, 100, 100);
     }
 
-    void offer(String s) {
+    public void offer(String s) {
         // Не помещаем пустые строки, чтобы не загромождать вывод.
         if (s == null || s.isEmpty()) return;
         queue.offer(s);
     }
 
-    private void flush() {
+    /** Буфер строк без выделений; сливается вместе с очередью, целиком, без учёта maxFlushBytes. */
+    public LogLineBuffer lines() {
+        return lines;
+    }
+
+    /**
+     * Сливает накопленное потребителю. Обычно вызывается таймером; открыт в пакете для
+     * бенчмарков, которым нужен синхронный слив без ожидания тика.
+     */
+    void flush() {
         // Если сообщений нет — лишний раз не дергаем потребителя.
-        if (queue.isEmpty()) return;
+        if (queue.isEmpty() && lines.isEmpty()) return;
         StringBuilder sb = new StringBuilder();
+        lines.drainTo(sb);
         // Считываем пока не достигли лимита байт либо очередь не опустела.
         while (!queue.isEmpty() && sb.length() < maxFlushBytes) {
             String s = queue.poll();
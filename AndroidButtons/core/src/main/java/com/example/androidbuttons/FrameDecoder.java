@@ -0,0 +1,104 @@
+package com.example.androidbuttons;
+
+/**
+ * Потоковый разбор кадров {@link ControlFrameCodec}: байты из сокета дописываются в буфер, из
+ * которого извлекаются кадры с верной CRC. Мусор до стартового байта, кадры с неверной CRC и
+ * недопустимой длиной пропускаются побайтно. Буфер переиспользуется между вызовами. Не
+ * потокобезопасен — используется одним потоком чтения.
+ */
+public final class FrameDecoder {
+
+    /** Получатель разобранных кадров; данные действительны только на время вызова. */
+    public interface Listener {
+        void onFrame(int cmd, byte[] buf, int dataOff, int len);
+    }
+
+    private final Listener listener;
+    private byte[] rxBuf = new byte[2048];
+    private int rxSize = 0;
+
+    public FrameDecoder(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Дописывает байты и отдаёт все полностью пришедшие кадры. */
+    public void feed(byte[] src, int off, int len) {
+        ensureCapacity(rxSize + len);
+        System.arraycopy(src, off, rxBuf, rxSize, len);
+        rxSize += len;
+        drainFrames();
+    }
+
+    /** Число байт, ожидающих продолжения кадра. */
+    public int pending() {
+        return rxSize;
+    }
+
+    public void reset() {
+        rxSize = 0;
+    }
+
+    private void ensureCapacity(int need) {
+        if (need <= rxBuf.length) return;
+        int cap = rxBuf.length;
+        while (cap < need) cap *= 2;
+        byte[] nb = new byte[cap];
+        System.arraycopy(rxBuf, 0, nb, 0, rxSize);
+        rxBuf = nb;
+    }
+
+    /**
+     * Извлекает из rxBuf валидные кадры. Буфер перераспределяем вручную, чтобы повторно использовать память.
+     */
+    private void drainFrames() {
+        int i = 0;
+        while (true) {
+            // Найти стартовый байт
+            while (i < rxSize && rxBuf[i] != ControlFrameCodec.START) i++;
+            if (i >= rxSize) { // всё отброшено
+                rxSize = 0;
+                return;
+            }
+            // Сдвигаем буфер так, чтобы кадр начинался с 0
+            if (i > 0) {
+                System.arraycopy(rxBuf, i, rxBuf, 0, rxSize - i);
+                rxSize -= i;
+                i = 0;
+            }
+            // Ждём заголовок минимум 1+1+2+1 = 5 байт (с пустыми данными)
+            if (rxSize < ControlFrameCodec.OVERHEAD) return;
+            int cmd = rxBuf[1] & 0xFF;
+            int len = ((rxBuf[2] & 0xFF) << 8) | (rxBuf[3] & 0xFF);
+            int total = ControlFrameCodec.OVERHEAD + len;
+            if (len > ControlFrameCodec.MAX_PAYLOAD) { // защита от мусора
+                // пропускаем стартовый байт и пытаемся снова
+                consume(1);
+                continue;
+            }
+            if (rxSize < total) return; // ждём остальные байты
+
+            // Проверка CRC
+            byte crcExpected = rxBuf[total - 1];
+            byte crc = ControlFrameCodec.crc8(rxBuf, 1, 3 + len); // cmd+lenHi+lenLo+data
+            if (crc != crcExpected) {
+                // Плохой кадр — пропускаем стартовый и ищем дальше
+                consume(1);
+                continue;
+            }
+
+            listener.onFrame(cmd, rxBuf, 4, len);
+
+            // Съедаем кадр и продолжаем
+            consume(total);
+        }
+    }
+
+    /**
+     * Сдвигает буфер, отбрасывая уже обработанные байты.
+     */
+    private void consume(int n) {
+        if (n >= rxSize) { rxSize = 0; return; }
+        System.arraycopy(rxBuf, n, rxBuf, 0, rxSize - n);
+        rxSize -= n;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.androidbuttons;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Диспетчер разобранных кадров по байту команды: таблица из 256 обработчиков, выбор обработчика —
+ * одно обращение к массиву, без выделения памяти на кадр. Кадры без зарегистрированного
+ * обработчика только подсчитываются по номеру команды; кадры, которые обработчик отверг
+ * (неверная длина или содержимое), считаются отдельно. Обработчики регистрируются до начала
+ * чтения; счётчики можно читать с любого потока.
+ */
+public final class FrameDispatcher implements FrameDecoder.Listener {
+
+    /** Разбор данных кадра одной команды; данные действительны только на время вызова. */
+    public interface Handler {
+        /** @return false, если кадр не подходит по длине или содержимому */
+        boolean onFrame(int cmd, byte[] buf, int dataOff, int len);
+    }
+
+    private static final int TABLE_SIZE = 256;
+
+    private final Handler[] handlers = new Handler[TABLE_SIZE];
+    private final AtomicLongArray handled = new AtomicLongArray(TABLE_SIZE);
+    private final AtomicLongArray rejected = new AtomicLongArray(TABLE_SIZE);
+    private final AtomicLongArray unknown = new AtomicLongArray(TABLE_SIZE);
+
+    /** Назначает обработчик команде cmd (0..255); null снимает обработчик. */
+    public FrameDispatcher register(int cmd, Handler handler) {
+        handlers[cmd & 0xFF] = handler;
+        return this;
+    }
+
+    /** Назначает один обработчик диапазону команд [from, to]. */
+    public FrameDispatcher registerRange(int from, int to, Handler handler) {
+        for (int cmd = from; cmd <= to; cmd++) register(cmd, handler);
+        return this;
+    }
+
+    @Override
+    public void onFrame(int cmd, byte[] buf, int dataOff, int len) {
+        int index = cmd & 0xFF;
+        Handler handler = handlers[index];
+        if (handler == null) {
+            unknown.incrementAndGet(index);
+        } else if (handler.onFrame(index, buf, dataOff, len)) {
+            handled.incrementAndGet(index);
+        } else {
+            rejected.incrementAndGet(index);
+        }
+    }
+
+    public long handled(int cmd) {
+        return handled.get(cmd & 0xFF);
+    }
+
+    public long rejected(int cmd) {
+        return rejected.get(cmd & 0xFF);
+    }
+
+    public long unknown(int cmd) {
+        return unknown.get(cmd & 0xFF);
+    }
+
+    public long unknownTotal() {
+        return sum(unknown);
+    }
+
+    /**
+     * Сводка для логов: «handled=… rejected=… unknown=… [0x5A×3 0x7F×1]» — в скобках команды без
+     * обработчика и число их кадров.
+     */
+    public String stats() {
+        StringBuilder sb = new StringBuilder()
+                .append("handled=").append(sum(handled))
+                .append(" rejected=").append(sum(rejected))
+                .append(" unknown=").append(unknownTotal());
+        boolean first = true;
+        for (int cmd = 0; cmd < TABLE_SIZE; cmd++) {
+            long count = unknown.get(cmd);
+            if (count == 0) continue;
+            sb.append(first ? " [" : " ");
+            first = false;
+            sb.append("0x").append(Character.toUpperCase(Character.forDigit(cmd >> 4, 16)))
+                    .append(Character.toUpperCase(Character.forDigit(cmd & 0xF, 16)))
+                    .append('×').append(count);
+        }
+        if (!first) sb.append(']');
+        return sb.toString();
+    }
+
+    private static long sum(AtomicLongArray counters) {
+        long total = 0;
+        for (int i = 0; i < counters.length(); i++) total += counters.get(i);
+        return total;
+    }
+}
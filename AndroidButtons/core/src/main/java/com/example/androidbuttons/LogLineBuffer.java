@@ -0,0 +1,99 @@
+package com.example.androidbuttons;
+
+/**
+ * Предвыделенный буфер строк консоли для горячих путей RX/TX: строка собирается из литералов и
+ * чисел прямо в массив символов, без промежуточных String и форматирования. Потребитель забирает
+ * накопленное блоком через {@link #drainTo}. Если строка не помещается, она отбрасывается целиком
+ * и учитывается в {@link #droppedLines()}.
+ *
+ * <p>Строка собирается под монитором буфера, чтобы строки разных потоков не перемешались:
+ * <pre>
+ * synchronized (log) {
+ *     log.text("Rx: loco").number(loco).text(" -> state").number(state).endLine();
+ * }
+ * </pre>
+ */
+public final class LogLineBuffer {
+
+    private final char[] chars;
+    // Символы завершённых строк
+    private int length = 0;
+    // Конец собираемой строки; строка начинается с length
+    private int cursor = 0;
+    private boolean overflow = false;
+    private long droppedLines = 0;
+
+    public LogLineBuffer(int capacityChars) {
+        this.chars = new char[Math.max(64, capacityChars)];
+    }
+
+    /** Дописывает текст в собираемую строку. Вызывается под монитором буфера. */
+    public LogLineBuffer text(String s) {
+        int n = s.length();
+        if (!reserve(n)) return this;
+        s.getChars(0, n, chars, cursor);
+        cursor += n;
+        return this;
+    }
+
+    /** Дописывает десятичное число. Вызывается под монитором буфера. */
+    public LogLineBuffer number(int value) {
+        long v = value;
+        boolean negative = v < 0;
+        if (negative) v = -v;
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) digits++;
+        int n = digits + (negative ? 1 : 0);
+        if (!reserve(n)) return this;
+        if (negative) chars[cursor] = '-';
+        int pos = cursor + n;
+        do {
+            chars[--pos] = (char) ('0' + (int) (v % 10));
+            v /= 10;
+        } while (v != 0);
+        cursor += n;
+        return this;
+    }
+
+    /**
+     * Завершает строку переводом строки и делает её видимой для {@link #drainTo}; не поместившаяся
+     * строка отбрасывается. Вызывается под монитором буфера.
+     */
+    public void endLine() {
+        if (reserve(1)) chars[cursor++] = '\n';
+        if (overflow) {
+            overflow = false;
+            cursor = length;
+            droppedLines++;
+            return;
+        }
+        length = cursor;
+    }
+
+    /** Переносит завершённые строки в sb и очищает буфер; возвращает число перенесённых символов. */
+    public synchronized int drainTo(StringBuilder sb) {
+        int n = length;
+        if (n == 0) return 0;
+        sb.append(chars, 0, n);
+        // Недособранной строки здесь быть не может: её собирают под тем же монитором
+        length = 0;
+        cursor = 0;
+        return n;
+    }
+
+    public synchronized boolean isEmpty() {
+        return length == 0;
+    }
+
+    /** Строк, отброшенных из-за переполнения до слива. */
+    public synchronized long droppedLines() {
+        return droppedLines;
+    }
+
+    private boolean reserve(int n) {
+        if (overflow) return false;
+        if (cursor + n <= chars.length) return true;
+        overflow = true;
+        return false;
+    }
+}
@@ -0,0 +1,413 @@
+package com.example.androidbuttons;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Лёгкая «шина» для обмена состоянием светодиодной полосы между активити и overlay-сервисом.
+ * Слушатели регистрируются в CopyOnWriteArrayList, что избавляет от ручной синхронизации и
+ * корректно работает при редком количестве подписчиков.
+ * <p>
+ * Шина хранит таблицу последних известных состояний всех локомотивов (AtomicLongArray), поэтому
+ * при смене выбранного локомотива полоса перерисовывается сразу из таблицы, не дожидаясь нового кадра.
+ * <p>
+ * Подписчик может указать исполнитель (например, {@code mainHandler::post}) и политику слияния.
+ * При {@link Conflation#LATEST} у подписчика в очереди исполнителя лежит не больше одной доставки:
+ * пока она не выполнена, новые состояния лишь отмечают свой локомотив, а значение читается из таблицы
+ * в момент доставки.
+ * <p>
+ * Каждое изменение несёт версию, полученную в момент возникновения события ({@link #nextVersion()}):
+ * касание overlay, разбор RX-кадра. Ячейка таблицы хранит упакованную пару (версия, состояние) в
+ * одном long и обновляется CAS-циклом, поэтому запоздавшее эхо старого состояния отбрасывается без
+ * блокировок и не перерисовывает полосу назад.
+ */
+public final class StateBus {
+
+	private StateBus() {}
+
+	public interface StripStateListener {
+		/**
+		 * Вызывается, когда появляется новое «абсолютное» состояние полосы. Сервису достаточно
+		 * обновить отображение, не отправляя событий назад.
+		 */
+		void onStripStateChanged(int state);
+	}
+
+	public interface OverlaySelectionListener {
+		/**
+		 * Срабатывает, когда пользователь выбирает состояние через overlay. MainActivity должна
+		 * отреагировать и отправить команду управлению.
+		 */
+		void onOverlayStateSelected(int state, int version);
+	}
+
+	public interface LocoStateListener {
+		/**
+		 * Вызывается при изменении последнего известного состояния конкретного локомотива,
+		 * независимо от того, выбран ли он сейчас.
+		 */
+		void onLocoStateChanged(int loco, int state);
+	}
+
+	/**
+	 * Политика доставки событий подписчику с исполнителем.
+	 */
+	public enum Conflation {
+		/** Каждое событие доставляется отдельной задачей. */
+		NONE,
+		/**
+		 * «Последнее побеждает»: для каждого локомотива доставляется только самое свежее состояние,
+		 * в очереди исполнителя не больше одной задачи на подписчика. Для слушателей полосы
+		 * ключом служит сама полоса — важна только последняя картинка.
+		 */
+		LATEST
+	}
+
+	/** Количество локомотивов в таблице состояний (номера 1..LOCO_COUNT). */
+	public static final int LOCO_COUNT = 8;
+
+	private static final CopyOnWriteArrayList<Subscription> stateListeners = new CopyOnWriteArrayList<>();
+	private static final CopyOnWriteArrayList<OverlaySelectionListener> selectionListeners = new CopyOnWriteArrayList<>();
+	// Индекс 0 — подписчики на все локомотивы, 1..LOCO_COUNT — на конкретный номер
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static final CopyOnWriteArrayList<Subscription>[] locoListeners = new CopyOnWriteArrayList[LOCO_COUNT + 1];
+	// Индекс = номер локомотива; ячейка = (версия << 32) | состояние, состояние 0 — ещё неизвестно
+	private static final AtomicLongArray locoEntries = new AtomicLongArray(LOCO_COUNT + 1);
+	// Источник версий; 0 зарезервирован за начальным содержимым таблицы
+	private static final AtomicInteger versionClock = new AtomicInteger(0);
+
+	static {
+		for (int i = 0; i < locoListeners.length; i++) locoListeners[i] = new CopyOnWriteArrayList<>();
+	}
+
+	/**
+	 * Возвращает текущее зафиксированное состояние выбранного локомотива (0 если не установлено).
+	 */
+	public static int getCurrentState() {
+		return getLocoState(AppState.selectedLoco.get());
+	}
+
+	/**
+	 * Последнее известное состояние локомотива (0 если неизвестно или номер вне таблицы).
+	 */
+	public static int getLocoState(int loco) {
+		if (loco < 1 || loco > LOCO_COUNT) return 0;
+		return stateOf(locoEntries.get(loco));
+	}
+
+	/**
+	 * Копирует таблицу состояний в dst (dst[loco - 1] = состояние) и возвращает dst. Чтение
+	 * выполняется без блокировок; каждая ячейка читается атомарно.
+	 */
+	public static int[] snapshotLocoStates(int[] dst) {
+		int[] out = dst != null && dst.length >= LOCO_COUNT ? dst : new int[LOCO_COUNT];
+		for (int loco = 1; loco <= LOCO_COUNT; loco++) {
+			out[loco - 1] = stateOf(locoEntries.get(loco));
+		}
+		return out;
+	}
+
+	public static void registerStateListener(StripStateListener listener) {
+		registerStateListener(listener, null, Conflation.NONE);
+	}
+
+	/**
+	 * Регистрирует слушателя полосы с доставкой через executor (null — синхронно в потоке
+	 * публикации). При подключении слушатель сразу получает актуальное состояние, чтобы не ожидать
+	 * следующего события.
+	 */
+	public static void registerStateListener(StripStateListener listener, Executor executor, Conflation conflation) {
+		if (listener == null || find(stateListeners, listener) != null) return;
+		Subscription sub = new Subscription(listener, executor, conflation);
+		stateListeners.add(sub);
+		int selected = AppState.selectedLoco.get();
+		long entry = selected >= 1 && selected <= LOCO_COUNT ? locoEntries.get(selected) : 0L;
+		if (stateOf(entry) > 0) {
+			sub.offer(0, selected, versionOf(entry));
+		}
+	}
+
+	public static void unregisterStateListener(StripStateListener listener) {
+		remove(stateListeners, listener);
+	}
+
+	public static void registerSelectionListener(OverlaySelectionListener listener) {
+		if (listener == null) return;
+		selectionListeners.addIfAbsent(listener);
+	}
+
+	public static void unregisterSelectionListener(OverlaySelectionListener listener) {
+		if (listener == null) return;
+		selectionListeners.remove(listener);
+	}
+
+	/**
+	 * Подписка на состояние конкретного локомотива (loco = 0 — на все) с синхронной доставкой.
+	 */
+	public static void registerLocoListener(int loco, LocoStateListener listener) {
+		registerLocoListener(loco, listener, null, Conflation.NONE);
+	}
+
+	/**
+	 * Подписка на состояние конкретного локомотива (loco = 0 — на все) с доставкой через executor.
+	 * Если состояние уже известно, слушатель сразу получает его.
+	 */
+	public static void registerLocoListener(int loco, LocoStateListener listener, Executor executor, Conflation conflation) {
+		if (listener == null || loco < 0 || loco > LOCO_COUNT) return;
+		if (find(locoListeners[loco], listener) != null) return;
+		Subscription sub = new Subscription(listener, executor, conflation);
+		locoListeners[loco].add(sub);
+		int from = loco == 0 ? 1 : loco;
+		int to = loco == 0 ? LOCO_COUNT : loco;
+		for (int l = from; l <= to; l++) {
+			long entry = locoEntries.get(l);
+			if (stateOf(entry) > 0) sub.offer(l, l, versionOf(entry));
+		}
+	}
+
+	public static void unregisterLocoListener(LocoStateListener listener) {
+		if (listener == null) return;
+		for (CopyOnWriteArrayList<Subscription> list : locoListeners) remove(list, listener);
+	}
+
+	/**
+	 * Выдаёт новую версию для изменения состояния. Вызывается там, где событие возникло, — до
+	 * любых переходов между потоками, чтобы порядок версий совпадал с порядком событий.
+	 */
+	public static int nextVersion() {
+		return versionClock.incrementAndGet();
+	}
+
+	/**
+	 * Публикует состояние выбранного локомотива с новой версией. Сохранено для совместимости:
+	 * эквивалентно publishLocoState(AppState.selectedLoco, state, nextVersion()).
+	 */
+	public static void publishStripState(int state) {
+		publishLocoState(AppState.selectedLoco.get(), state, nextVersion());
+	}
+
+	/**
+	 * Публикует состояние выбранного локомотива с версией, полученной в момент события.
+	 *
+	 * @return false, если таблица уже содержит более новое изменение.
+	 */
+	public static boolean publishStripState(int state, int version) {
+		return publishLocoState(AppState.selectedLoco.get(), state, version);
+	}
+
+	/**
+	 * Записывает состояние локомотива в таблицу с новой версией и уведомляет подписчиков.
+	 */
+	public static void publishLocoState(int loco, int state) {
+		publishLocoState(loco, state, nextVersion());
+	}
+
+	/**
+	 * Записывает состояние локомотива в таблицу, если версия новее сохранённой, и уведомляет его
+	 * подписчиков. Если локомотив выбран, состояние также уходит слушателям полосы.
+	 *
+	 * @return true, если изменение принято; false — если оно устарело (или номер вне таблицы).
+	 */
+	public static boolean publishLocoState(int loco, int state, int version) {
+		if (loco < 1 || loco > LOCO_COUNT) return false;
+		int value = Math.max(state, 0);
+		long next = pack(version, value);
+		while (true) {
+			long current = locoEntries.get(loco);
+			// Сравнение через разность корректно и при переполнении счётчика версий
+			if (version - versionOf(current) <= 0) return false;
+			if (locoEntries.compareAndSet(loco, current, next)) break;
+		}
+		if (value == 0) return true;
+		notifyLoco(loco, version);
+		if (loco == AppState.selectedLoco.get()) {
+			notifyStrip(loco, version);
+		}
+		return true;
+	}
+
+	/**
+	 * Применяет снимок состояний всех локомотивов (states[loco - 1], 0 — пропустить) с одной
+	 * версией. Сначала обновляется вся таблица, затем подписчики получают принятые изменения;
+	 * подписчики со слиянием LATEST обычно получают весь снимок одной доставкой. Ячейки, в которых
+	 * уже лежит более новое изменение, снимок не трогает.
+	 *
+	 * @return число принятых ячеек
+	 */
+	public static int publishSnapshot(int[] states, int version) {
+		if (states == null) return 0;
+		int accepted = 0;
+		int count = Math.min(states.length, LOCO_COUNT);
+		for (int i = 0; i < count; i++) {
+			int loco = i + 1;
+			int state = states[i];
+			if (state <= 0) continue;
+			long next = pack(version, state);
+			while (true) {
+				long current = locoEntries.get(loco);
+				if (version - versionOf(current) <= 0) break;
+				if (locoEntries.compareAndSet(loco, current, next)) {
+					accepted |= 1 << loco;
+					break;
+				}
+			}
+		}
+		int selected = AppState.selectedLoco.get();
+		for (int loco = 1; loco <= count; loco++) {
+			if ((accepted & (1 << loco)) == 0) continue;
+			notifyLoco(loco, version);
+			if (loco == selected) notifyStrip(loco, version);
+		}
+		return Integer.bitCount(accepted);
+	}
+
+	/**
+	 * Переключает выбранный локомотив и сразу отдаёт слушателям полосы его последнее известное
+	 * состояние из таблицы.
+	 */
+	public static void selectLoco(int loco) {
+		if (loco < 1 || loco > LOCO_COUNT) return;
+		int previous = AppState.selectedLoco.getAndSet(loco);
+		if (previous == loco) return;
+		long entry = locoEntries.get(loco);
+		if (stateOf(entry) > 0) {
+			notifyStrip(loco, versionOf(entry));
+		}
+	}
+
+	/*
+	 * Уведомления несут не состояние, а номер локомотива и версию принятого изменения: само
+	 * состояние подписчик читает из таблицы в момент доставки. Так проигравший гонку публикатор,
+	 * уведомляющий позже победителя, не может доставить устаревшее значение последним.
+	 */
+	private static void notifyStrip(int loco, int version) {
+		// CopyOnWriteArrayList безопасна к итерированию без синхронизации — храним компактный
+		// список, поэтому накладные расходы копирования минимальны.
+		for (Subscription sub : stateListeners) {
+			sub.offer(0, loco, version);
+		}
+	}
+
+	private static void notifyLoco(int loco, int version) {
+		for (Subscription sub : locoListeners[loco]) {
+			sub.offer(loco, loco, version);
+		}
+		for (Subscription sub : locoListeners[0]) {
+			sub.offer(loco, loco, version);
+		}
+	}
+
+	private static Subscription find(CopyOnWriteArrayList<Subscription> list, Object listener) {
+		for (Subscription sub : list) {
+			if (sub.listener == listener) return sub;
+		}
+		return null;
+	}
+
+	private static void remove(CopyOnWriteArrayList<Subscription> list, Object listener) {
+		if (listener == null) return;
+		Subscription sub = find(list, listener);
+		if (sub != null) {
+			sub.active = false;
+			list.remove(sub);
+		}
+	}
+
+	/**
+	 * Сообщает о выборе состояния в overlay. Версия берётся здесь, в момент касания, и передаётся
+	 * слушателям вместе с состоянием.
+	 */
+	public static void publishOverlaySelection(int state) {
+		if (state <= 0) return;
+		int version = nextVersion();
+		for (OverlaySelectionListener listener : selectionListeners) {
+			listener.onOverlayStateSelected(state, version);
+		}
+	}
+
+	private static long pack(int version, int state) {
+		return ((long) version << 32) | (state & 0xFFFFFFFFL);
+	}
+
+	private static int versionOf(long entry) {
+		return (int) (entry >>> 32);
+	}
+
+	private static int stateOf(long entry) {
+		return (int) entry;
+	}
+
+	/**
+	 * Подписка с адресной доставкой. Ключ доставки — номер локомотива, 0 — полоса. Для
+	 * {@link Conflation#LATEST} маска dirty отмечает изменённые ключи, а флаг scheduled гарантирует,
+	 * что в очереди исполнителя не больше одной задачи; состояние ключа читается из таблицы при
+	 * выполнении задачи, поэтому доставляется всегда победитель последнего CAS. Отдельные доставки
+	 * (синхронные и {@link Conflation#NONE}) выполняются, только если их версия всё ещё актуальна.
+	 */
+	private static final class Subscription implements Runnable {
+		final Object listener;
+		final Executor executor;
+		final Conflation conflation;
+		final AtomicInteger dirty = new AtomicInteger(0);
+		final AtomicBoolean scheduled = new AtomicBoolean(false);
+		volatile boolean active = true;
+
+		Subscription(Object listener, Executor executor, Conflation conflation) {
+			this.listener = listener;
+			this.executor = executor;
+			this.conflation = conflation != null ? conflation : Conflation.NONE;
+		}
+
+		void offer(int key, int loco, int version) {
+			if (executor == null) {
+				deliverIfCurrent(key, loco, version);
+				return;
+			}
+			if (conflation == Conflation.NONE) {
+				executor.execute(() -> deliverIfCurrent(key, loco, version));
+				return;
+			}
+			int bit = 1 << key;
+			int mask;
+			do {
+				mask = dirty.get();
+			} while ((mask & bit) == 0 && !dirty.compareAndSet(mask, mask | bit));
+			if (scheduled.compareAndSet(false, true)) {
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			// Сначала снимаем флаг, затем забираем маску: публикация, пришедшая после чтения маски,
+			// запланирует новую задачу и не потеряется.
+			scheduled.set(false);
+			int mask = dirty.getAndSet(0);
+			for (int key = 0; mask != 0; key++, mask >>>= 1) {
+				if ((mask & 1) == 0) continue;
+				int state = key == 0 ? getCurrentState() : getLocoState(key);
+				if (state > 0) deliver(key, state);
+			}
+		}
+
+		/** Доставляет изменение, если таблица не успела получить более новое (или выбор не сменился). */
+		private void deliverIfCurrent(int key, int loco, int version) {
+			if (key == 0 && AppState.selectedLoco.get() != loco) return;
+			long entry = locoEntries.get(loco);
+			if (versionOf(entry) != version) return;
+			deliver(key, stateOf(entry));
+		}
+
+		private void deliver(int key, int state) {
+			if (!active) return;
+			if (listener instanceof StripStateListener) {
+				((StripStateListener) listener).onStripStateChanged(state);
+			} else {
+				((LocoStateListener) listener).onLocoStateChanged(key, state);
+			}
+		}
+	}
+}
@@ -0,0 +1,777 @@
+package com.example.androidbuttons;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.function.Consumer;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Менеджер TCP-подключения к железу. Отвечает за авто-подключение, формирование кадров управого
+ * протокола и разбор входящих команд. Вся работа ведётся на отдельных потоках, чтобы не блокировать UI.
+ * Потоки держат менеджер и его колбэки, поэтому владелец обязан вызвать {@link #close()}.
+ */
+public class TcpManager implements ControlTransport, AutoCloseable {
+    /**
+     * Получатель снимка состояний всех локомотивов: states[loco - 1], 0 — состояние неизвестно.
+     * version — версия StateBus, взятая в момент запроса снимка: изменения, опубликованные между
+     * запросом и ответом, новее снимка и не откатываются им. Вызывается на потоке чтения; массив
+     * переиспользуется и действителен только на время вызова.
+     */
+    public interface SnapshotListener {
+        void onSnapshot(int[] states, int version);
+    }
+
+    /**
+     * Получатель разобранных RX-кадров без промежуточного текста. Вызывается на потоке чтения в
+     * порядке прихода кадров, так что ACK команды отделяет кадры, отправленные железом до неё, от
+     * последующих. Байты телеметрии действительны только на время вызова. Пока слушатель не задан,
+     * кадры состояния и телеметрии отдаются строками в onData.
+     */
+    public interface RxFrameListener {
+        void onStateFrame(int loco, int state);
+        void onAckFrame(int loco, int state);
+        void onTelemetryFrame(byte[] buf, int off, int len);
+    }
+
+    public interface Callback {
+        void onStart();
+        void onStop();
+        void onData(String data);
+        void onError(String message);
+    }
+
+    // Заменили внутренний StringConsumer на стандартный Consumer<String>,
+    // чтобы избежать проблем dex/R8 с вложенными nest host классами.
+    private final Runnable onStart;
+    private final Runnable onStop;
+    private final Consumer<String> onData;
+    private final Consumer<String> onError;
+    private final Consumer<String> onStatus;
+
+    /** Фаза соединения; допустимые переходы описаны у {@link Link}. */
+    public enum Phase { IDLE, CONNECTING, CONNECTED, CLOSING, BACKOFF }
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final long BACKOFF_BASE_MS = 1000L;
+    private static final long BACKOFF_MAX_MS = 8000L;
+    private static final long AUTO_TICK_MS = 250L;
+    private static final long CLOSE_JOIN_MS = 1000L;
+
+    /**
+     * Неизменяемый снимок соединения. Переходы:
+     * <ul>
+     *   <li>IDLE, BACKOFF → CONNECTING — {@link #connect};</li>
+     *   <li>CONNECTING → CONNECTED — поток чтения после установки соединения;</li>
+     *   <li>CONNECTING, CONNECTED → CLOSING — {@link #disconnect} или ошибка/конец потока чтения;</li>
+     *   <li>CLOSING → IDLE (закрыто вручную, автоподключение выключено) или BACKOFF (ждём повтор);</li>
+     *   <li>BACKOFF → IDLE — автоподключение выключено или на паузе.</li>
+     * </ul>
+     * Каждый переход — CAS от конкретного снимка, поэтому поток устаревшей попытки не может
+     * перезаписать состояние новой, а чтение состояния никогда не ждёт сетевой операции.
+     */
+    private static final class Link {
+        static final Link IDLE = new Link(Phase.IDLE, null, 0, 0L, false);
+
+        final Phase phase;
+        /** Сокет текущей попытки; null в IDLE и BACKOFF. */
+        final Socket socket;
+        /** Неудачных попыток подряд — от них зависит задержка BACKOFF. */
+        final int failures;
+        /** BACKOFF: следующая попытка не раньше этого момента ({@link #monotonicMs}). */
+        final long retryAtMs;
+        /** CLOSING по {@link #disconnect}: после закрытия — IDLE без повтора. */
+        final boolean manualClose;
+
+        Link(Phase phase, Socket socket, int failures, long retryAtMs, boolean manualClose) {
+            this.phase = phase;
+            this.socket = socket;
+            this.failures = failures;
+            this.retryAtMs = retryAtMs;
+            this.manualClose = manualClose;
+        }
+    }
+
+    private final AtomicReference<Link> link = new AtomicReference<>(Link.IDLE);
+
+    // Отдельный поток для поддержания подключения и чтения входящих данных.
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Отдельный поток записи, чтобы долгий цикл чтения не блокировал отправку. Работа передаётся
+    // битами writerWork и данными в ячейках, без очереди задач: отправка команды ничего не выделяет.
+    private static final int WORK_OUTBOX = 1;
+    private static final int WORK_TX = 2;
+    private static final int WORK_SNAPSHOT = 4;
+    private final AtomicInteger writerWork = new AtomicInteger();
+    private final Thread writer = new Thread(this::writerLoop, "tcp-writer");
+    private volatile boolean closed = false;
+
+    // Настройки автоподключения (не состояние соединения)
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> autoTask;
+    private volatile boolean autoMode = false;
+    private volatile boolean autoPaused = false;
+    private volatile String targetHost = null;
+    private volatile int targetPort = -1;
+
+    // --- Framed protocol state for RX ---
+    private final FrameDispatcher rxDispatcher = new FrameDispatcher()
+            .registerRange(ControlFrameCodec.LOCO_MIN, ControlFrameCodec.LOCO_MAX, this::onStateFrame)
+            .register(ControlFrameCodec.CMD_HEARTBEAT, this::onHeartbeatFrame)
+            .register(ControlFrameCodec.CMD_ACK, this::onAckFrame)
+            .register(ControlFrameCodec.CMD_TELEMETRY, this::onTelemetryFrame)
+            .register(ControlFrameCodec.CMD_BATCH, this::onBatchFrame)
+            .register(ControlFrameCodec.CMD_SNAPSHOT, this::onSnapshotFrame);
+    private final int[] snapshotStates = new int[ControlFrameCodec.LOCO_MAX];
+    private volatile SnapshotListener snapshotListener;
+    // Версия StateBus самого раннего неотвеченного запроса снимка, 0 — запроса нет
+    private final AtomicInteger snapshotVersion = new AtomicInteger();
+    private volatile RxFrameListener rxFrameListener;
+    private final FrameDecoder rxDecoder = new FrameDecoder(rxDispatcher);
+    private volatile long lastHeartbeatMs = 0L;
+    // Последнее подтверждение: (loco << 8) | state, 0 — подтверждений не было
+    private volatile int lastAck = 0;
+    // Кадры TX собираются на потоке записи в одни и те же буферы
+    private final byte[] txFrame = new byte[ControlFrameCodec.CONTROL_FRAME_LENGTH];
+    // Команды к отправке: ячейка на локомотив, 0 — пусто. Поток записи забирает все разом
+    private final AtomicIntegerArray txPending = new AtomicIntegerArray(ControlFrameCodec.LOCO_MAX + 1);
+    private final int[] txTaken = new int[ControlFrameCodec.LOCO_MAX + 1];
+    private final byte[] txFrames =
+            new byte[ControlFrameCodec.LOCO_MAX * ControlFrameCodec.CONTROL_FRAME_LENGTH];
+    // Завершённых проходов flushTx; пишет только поток записи
+    private volatile long txFlushes = 0;
+
+    // --- Outbox: команды, отданные без связи ---
+    /** Сколько команда может ждать подключения, прежде чем устареет. */
+    static final long OUTBOX_TTL_MS = 10_000L;
+    // По ячейке на локомотив: (время постановки по monotonicMs << 8) | state, 0 — пусто. Хранится
+    // только последняя команда, поэтому размер ограничен числом локомотивов.
+    private final AtomicLongArray outbox = new AtomicLongArray(ControlFrameCodec.LOCO_MAX + 1);
+    private final AtomicLong outboxDropped = new AtomicLong();
+    private final AtomicLong outboxReplayed = new AtomicLong();
+    private volatile long outboxTtlMs = OUTBOX_TTL_MS;
+    // Буферы выгрузки — только поток записи
+    private final long[] outboxTaken = new long[ControlFrameCodec.LOCO_MAX + 1];
+    private final byte[] outboxFrames =
+            new byte[ControlFrameCodec.LOCO_MAX * ControlFrameCodec.CONTROL_FRAME_LENGTH];
+
+    public TcpManager(Runnable onStart, Runnable onStop,
+               Consumer<String> onData,
+               Consumer<String> onError,
+               Consumer<String> onStatus) {
+        this.onStart = onStart;
+        this.onStop = onStop;
+        this.onData = onData;
+        this.onError = onError;
+        this.onStatus = onStatus;
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Текущая фаза соединения; чтение без блокировок. */
+    public Phase phase() {
+        return link.get().phase;
+    }
+
+    /**
+     * Запускает асинхронное подключение к заданному хосту/порту. Если подключение уже идёт,
+     * установлено или закрывается, вызов ничего не делает.
+     */
+    public void connect(String host, int port) {
+        // Валидация цели
+        if (closed || host == null || host.trim().isEmpty() || port < 1 || port > 65535) return;
+        Link current = link.get();
+        if (current.phase != Phase.IDLE && current.phase != Phase.BACKOFF) return;
+        Link attempt = new Link(Phase.CONNECTING, new Socket(), current.failures, 0L, false);
+        if (!transition(current, attempt)) {
+            // Другой поток успел сменить состояние — сокет этой попытки никому не достался
+            closeQuietly(attempt.socket);
+            return;
+        }
+        try {
+            executor.execute(() -> runConnection(attempt, host, port));
+        } catch (RejectedExecutionException e) {
+            // close() успел остановить поток чтения — попытка завершается, не начавшись
+            finishConnection(attempt.socket);
+        }
+    }
+
+    /**
+     * Останавливает менеджер: автоподключение выключается, соединение закрывается, поток записи
+     * завершается (ждём его не дольше {@link #CLOSE_JOIN_MS}), исполнители останавливаются. После
+     * вызова менеджер не подключается; команды без связи остаются в outbox и никуда не уйдут.
+     * Повторный вызов ничего не делает.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        disableAutoConnect();
+        disconnect();
+        closed = true;
+        LockSupport.unpark(writer);
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+        if (Thread.currentThread() != writer) {
+            try {
+                writer.join(CLOSE_JOIN_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Отключает клиента: текущая попытка переходит в CLOSING, сокет закрывается, и поток чтения
+     * завершает её переходом в IDLE. Ожидание повтора (BACKOFF) сбрасывается в IDLE.
+     */
+    public void disconnect() {
+        while (true) {
+            Link current = link.get();
+            if (current.phase == Phase.BACKOFF) {
+                if (transition(current, Link.IDLE)) return;
+                continue;
+            }
+            if (current.phase != Phase.CONNECTING && current.phase != Phase.CONNECTED) return;
+            Link closing = new Link(Phase.CLOSING, current.socket, current.failures, 0L, true);
+            if (transition(current, closing)) {
+                closeQuietly(current.socket);
+                return;
+            }
+        }
+    }
+
+    /** Одна попытка целиком: подключение, чтение до разрыва, завершение. Поток executor. */
+    private void runConnection(Link attempt, String host, int port) {
+        Socket sck = attempt.socket;
+        try {
+            // Попытки идут строго по очереди на одном потоке — хвост прошлой сессии можно сбросить
+            rxDecoder.reset();
+            sck.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            // Соединение установлено — поиск завершён (если disconnect() не успел раньше)
+            if (!transition(attempt, new Link(Phase.CONNECTED, sck, 0, 0L, false))) return;
+            if (onStatus != null) onStatus.accept("connected");
+            // Сначала отдаём накопленные без связи команды, затем запрашиваем полный снимок: поток
+            // записи один, поэтому снимок уже учтёт повторённые команды
+            signalWriter(WORK_OUTBOX);
+            // Запрос прошлой сессии ответа уже не получит
+            snapshotVersion.set(0);
+            requestSnapshot();
+            InputStream in = new BufferedInputStream(sck.getInputStream());
+            byte[] buf = new byte[512];
+            while (true) {
+                int n = in.read(buf);
+                if (n == -1) break;
+                if (n > 0) {
+                    onRxBytes(buf, 0, n);
+                }
+            }
+        } catch (IOException e) {
+            if (onError != null) onError.accept(e.getMessage());
+        } finally {
+            finishConnection(sck);
+            if (onStatus != null) onStatus.accept("disconnected");
+        }
+    }
+
+    /** Переводит попытку с сокетом sck через CLOSING в IDLE или BACKOFF. */
+    private void finishConnection(Socket sck) {
+        while (true) {
+            Link current = link.get();
+            if (current.socket != sck) return;
+            if (current.phase == Phase.CLOSING) break;
+            if (transition(current, new Link(Phase.CLOSING, sck, current.failures, 0L, false))) break;
+        }
+        closeQuietly(sck);
+        while (true) {
+            Link current = link.get();
+            if (current.socket != sck) return;
+            Link next;
+            if (!current.manualClose && autoMode && !autoPaused) {
+                int failures = current.failures + 1;
+                next = new Link(Phase.BACKOFF, null, failures, monotonicMs() + backoffDelayMs(failures), false);
+            } else {
+                next = Link.IDLE;
+            }
+            if (transition(current, next)) return;
+        }
+    }
+
+    /** Задержка перед повтором: 1, 2, 4, 8 с, дальше не растёт. */
+    static long backoffDelayMs(int failures) {
+        int shift = Math.min(Math.max(failures - 1, 0), 3);
+        return Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << shift);
+    }
+
+    /**
+     * CAS-переход между снимками. Индикатор поиска (onStart/onStop) соответствует фазам
+     * CONNECTING и BACKOFF и переключается только при входе в них или выходе из них.
+     */
+    private boolean transition(Link from, Link to) {
+        if (!link.compareAndSet(from, to)) return false;
+        boolean wasSearching = isSearching(from.phase);
+        boolean searching = isSearching(to.phase);
+        if (wasSearching != searching) {
+            Runnable callback = searching ? onStart : onStop;
+            if (callback != null) callback.run();
+        }
+        return true;
+    }
+
+    private static boolean isSearching(Phase phase) {
+        return phase == Phase.CONNECTING || phase == Phase.BACKOFF;
+    }
+
+    private static void closeQuietly(Socket sck) {
+        if (sck == null) return;
+        try { sck.close(); } catch (IOException ignored) {}
+    }
+
+    /** Сокет установленного соединения или null. */
+    private Socket connectedSocket() {
+        Link current = link.get();
+        if (current.phase != Phase.CONNECTED) return null;
+        Socket sck = current.socket;
+        return sck.isClosed() ? null : sck;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connectedSocket() != null;
+    }
+
+    /**
+     * Активно проверяет состояние TCP соединения.
+     * Использует sendUrgentData для надёжной проверки разрыва. Сокет берётся из снимка состояния,
+     * поэтому сетевая операция не держит никаких блокировок.
+     */
+    public boolean checkConnectionAlive() {
+        Socket sck = connectedSocket();
+        if (sck == null) {
+            return false;
+        }
+        
+        try {
+            // Проверяем TCP параметры
+            if (sck.isInputShutdown() || sck.isOutputShutdown()) {
+                return false;
+            }
+            
+            // Надёжный способ проверки - отправка urgent data (1 байт)
+            // Если соединение разорвано - выбросится IOException
+            sck.sendUrgentData(0xFF);
+            return true;
+        } catch (IOException e) {
+            // Если произошла ошибка - соединение потеряно
+            return false;
+        }
+    }
+
+    /**
+     * Проверяет, доступна ли конечная точка (адрес + порт) с заданным таймаутом.
+     * Используется как дополнительная проверка, когда основное соединение недоступно.
+     */
+    public boolean isEndpointReachable(int timeoutMs) {
+        String host = targetHost;
+        int port = targetPort;
+        if (host == null || host.trim().isEmpty() || port < 1 || port > 65535) {
+            return false;
+        }
+
+        try (Socket probe = new Socket()) {
+            probe.connect(new InetSocketAddress(host, port), Math.max(100, timeoutMs));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public String getTargetHost() {
+        return targetHost;
+    }
+
+    public int getTargetPort() {
+        return targetPort;
+    }
+
+    public boolean connectionActive() { return isConnected(); }
+
+    /**
+     * Собирает кадр управления для протокола (см. {@link ControlFrameCodec#buildControlFrame}).
+     */
+    public byte[] buildControlFrame(int loco, int state) {
+        return ControlFrameCodec.buildControlFrame(loco, state);
+    }
+
+    /**
+     * Удобный вспомогательный метод для логов — возвращает кадр в hex-представлении.
+     */
+    public String controlFrameHex(int loco, int state) {
+        byte[] frame = buildControlFrame(loco, state);
+        return ControlFrameCodec.toHex(frame, 0, frame.length);
+    }
+
+    /**
+     * Асинхронно отправляет кадр управления. Ошибки пишутся в onError. Команда кладётся в ячейку
+     * своего локомотива, и поток записи отправляет все ожидающие ячейки одной записью; если поток
+     * не успел забрать прошлую команду локомотива, уходит только последняя. Без связи (или если
+     * запись не удалась) команда остаётся в outbox — по последней на локомотив — и уходит одной
+     * записью при следующем подключении, если не старше {@link #OUTBOX_TTL_MS}. Номер локомотива и
+     * состояние приводятся в допустимый диапазон так же, как в {@link ControlFrameCodec#encodeControlFrame}:
+     * команда не теряется молча. Не выделяет память.
+     */
+    @Override
+    public void sendControl(int loco, int state) {
+        // Ячейки txPending и outbox считают 0 пустым — после приведения состояние всегда ненулевое
+        loco = Math.max(ControlFrameCodec.LOCO_MIN, Math.min(ControlFrameCodec.LOCO_MAX, loco));
+        state = Math.max(ControlFrameCodec.STATE_MIN, Math.min(ControlFrameCodec.STATE_MAX, state));
+        if (!isConnected()) {
+            enqueueOutbox(loco, state);
+            // Соединение могло установиться между проверкой и постановкой — выгрузка уже прошла
+            if (isConnected()) signalWriter(WORK_OUTBOX);
+            return;
+        }
+        txPending.set(loco, state);
+        signalWriter(WORK_TX);
+    }
+
+    /** Отправляет ожидающие команды одной записью; при неудаче они уходят в outbox. Только поток записи. */
+    private void flushTx() {
+        int len = 0;
+        for (int loco = ControlFrameCodec.LOCO_MIN; loco <= ControlFrameCodec.LOCO_MAX; loco++) {
+            int state = txPending.getAndSet(loco, 0);
+            txTaken[loco] = state;
+            if (state == 0) continue;
+            len += ControlFrameCodec.encodeControlFrame(loco, state, txFrames, len);
+        }
+        if (len != 0 && !write(txFrames, len)) {
+            for (int loco = ControlFrameCodec.LOCO_MIN; loco <= ControlFrameCodec.LOCO_MAX; loco++) {
+                if (txTaken[loco] != 0) enqueueOutbox(loco, txTaken[loco]);
+            }
+        }
+        txFlushes++;
+    }
+
+    /** Поток записи; для замеров выделений в тестах. */
+    Thread writerThread() {
+        return writer;
+    }
+
+    /** Завершённых проходов отправки команд; тесты по нему ждут, пока команда уйдёт в сокет. */
+    long txFlushes() {
+        return txFlushes;
+    }
+
+    /** Передаёт работу потоку записи и будит его. */
+    private void signalWriter(int work) {
+        int prev;
+        do {
+            prev = writerWork.get();
+        } while (!writerWork.compareAndSet(prev, prev | work));
+        // Пока прежние биты не забраны, поток и так не спит
+        if (prev == 0) LockSupport.unpark(writer);
+    }
+
+    /**
+     * Цикл потока записи до {@link #close()}. Порядок внутри одного пробуждения — outbox, команды,
+     * запрос снимка: снимок запрашивается после всех уже отданных команд и учитывает их.
+     */
+    private void writerLoop() {
+        while (!closed) {
+            int work = writerWork.getAndSet(0);
+            if (work == 0) {
+                LockSupport.park(this);
+                continue;
+            }
+            try {
+                if ((work & WORK_OUTBOX) != 0) flushOutbox();
+                if ((work & WORK_TX) != 0) flushTx();
+                if ((work & WORK_SNAPSHOT) != 0) {
+                    writeFrame(ControlFrameCodec.encodeEmptyFrame(ControlFrameCodec.CMD_SNAPSHOT_REQUEST, txFrame, 0));
+                }
+            } catch (Throwable t) {
+                // Поток записи один на менеджер — не даём ему умереть на неожиданном исключении
+                if (onError != null) onError.accept("TCP TX error: " + t);
+            }
+        }
+    }
+
+    /** Кладёт команду в outbox; предыдущая команда того же локомотива вытесняется и считается сброшенной. */
+    private void enqueueOutbox(int loco, int state) {
+        if (loco < ControlFrameCodec.LOCO_MIN || loco > ControlFrameCodec.LOCO_MAX) return;
+        long entry = (monotonicMs() << 8) | (state & 0xFF);
+        if (outbox.getAndSet(loco, entry) != 0L) outboxDropped.incrementAndGet();
+    }
+
+    /**
+     * Отправляет все неустаревшие команды outbox одной записью в сокет. Устаревшие считаются
+     * сброшенными; если запись не удалась, команды возвращаются в свои ячейки, если их не заняли
+     * более новые. Только поток записи.
+     */
+    private void flushOutbox() {
+        long now = monotonicMs();
+        long ttl = outboxTtlMs;
+        int len = 0;
+        for (int loco = ControlFrameCodec.LOCO_MIN; loco <= ControlFrameCodec.LOCO_MAX; loco++) {
+            long entry = outbox.getAndSet(loco, 0L);
+            outboxTaken[loco] = 0L;
+            if (entry == 0L) continue;
+            if (now - (entry >> 8) > ttl) {
+                outboxDropped.incrementAndGet();
+                continue;
+            }
+            outboxTaken[loco] = entry;
+            len += ControlFrameCodec.encodeControlFrame(loco, (int) (entry & 0xFF), outboxFrames, len);
+        }
+        if (len == 0) return;
+        if (write(outboxFrames, len)) {
+            outboxReplayed.addAndGet(len / ControlFrameCodec.CONTROL_FRAME_LENGTH);
+            return;
+        }
+        for (int loco = ControlFrameCodec.LOCO_MIN; loco <= ControlFrameCodec.LOCO_MAX; loco++) {
+            long entry = outboxTaken[loco];
+            if (entry != 0L && !outbox.compareAndSet(loco, 0L, entry)) outboxDropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Монотонное время в мс для срока жизни outbox и задержки повтора. Часы планшета при переподключении часто
+     * поправляет NTP: по ним устаревшие команды могли бы ожить, а свежие — устареть. Значение может
+     * быть отрицательным, поэтому время из ячейки извлекается знаковым сдвигом.
+     */
+    private static long monotonicMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /** Команд в outbox, ожидающих подключения. */
+    public int outboxPending() {
+        int pending = 0;
+        for (int loco = ControlFrameCodec.LOCO_MIN; loco <= ControlFrameCodec.LOCO_MAX; loco++) {
+            if (outbox.get(loco) != 0L) pending++;
+        }
+        return pending;
+    }
+
+    /** Команд outbox, вытесненных более новыми или устаревших до подключения. */
+    public long outboxDropped() {
+        return outboxDropped.get();
+    }
+
+    /** Команд outbox, отправленных после восстановления связи. */
+    public long outboxReplayed() {
+        return outboxReplayed.get();
+    }
+
+    /** Сводка outbox для логов: «pending=… replayed=… dropped=…». */
+    public String outboxStats() {
+        return "pending=" + outboxPending() + " replayed=" + outboxReplayed() + " dropped=" + outboxDropped();
+    }
+
+    /** Время жизни команд outbox; для тестов. */
+    void setOutboxTtlMs(long ttlMs) {
+        this.outboxTtlMs = ttlMs;
+    }
+
+    /**
+     * Запрашивает у железа снимок состояний всех локомотивов; ответ придёт в {@link SnapshotListener}
+     * с версией, взятой здесь, до отправки запроса. Если прошлый запрос ещё без ответа, ответ получит
+     * его версию — более старую, поэтому снимок не затрёт ничего, что новее любого из запросов.
+     * Вызывается автоматически при каждом подключении.
+     */
+    public void requestSnapshot() {
+        snapshotVersion.compareAndSet(0, StateBus.nextVersion());
+        signalWriter(WORK_SNAPSHOT);
+    }
+
+    public void setSnapshotListener(SnapshotListener listener) {
+        this.snapshotListener = listener;
+    }
+
+    /** Задаёт получателя кадров состояния и телеметрии; null — снова текстом в onData. */
+    public void setRxFrameListener(RxFrameListener listener) {
+        this.rxFrameListener = listener;
+    }
+
+    /** Пишет первые len байт txFrame в сокет. Только поток записи. */
+    private boolean writeFrame(int len) {
+        return write(txFrame, len);
+    }
+
+    /** Пишет первые len байт buf в сокет; false — связи нет или запись не удалась. Только поток записи. */
+    private boolean write(byte[] buf, int len) {
+        try {
+            Socket sck = connectedSocket();
+            if (sck == null) return false;
+            sck.getOutputStream().write(buf, 0, len);
+            sck.getOutputStream().flush();
+            return true;
+        } catch (IOException e) {
+            if (onError != null) onError.accept("TCP TX error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // ---- Auto connect API ----
+    /**
+     * Включает цикл автоподключения. Из IDLE подключение начинается сразу, из BACKOFF — когда
+     * истечёт задержка повтора. Если соединение уже установлено — просто обновляем параметры.
+     */
+    public void enableAutoConnect(String host, int port) {
+        if (closed) return;
+        targetHost = host;
+        targetPort = port;
+        autoMode = true;
+        if (autoTask != null) { autoTask.cancel(false); autoTask = null; }
+        autoTask = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                Link current = link.get();
+                if (!autoMode || autoPaused) { cancelBackoff(); return; }
+                String h = targetHost; int p = targetPort;
+                if (h == null || h.trim().isEmpty() || p < 1 || p > 65535) return;
+                if (current.phase == Phase.IDLE
+                        || (current.phase == Phase.BACKOFF && monotonicMs() - current.retryAtMs >= 0)) {
+                    connect(h, p);
+                }
+            } catch (Throwable t) { /* suppress */ }
+        }, 0, AUTO_TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Отключает авто-подключение и скрывает индикатор поиска.
+     */
+    public void disableAutoConnect() {
+        autoMode = false;
+        if (autoTask != null) { autoTask.cancel(false); autoTask = null; }
+        cancelBackoff();
+    }
+
+    /**
+     * Временная пауза для авто-подключения (например, когда пользователь вручную ставит соединение на паузу).
+     */
+    public void pauseAuto(boolean paused) {
+        this.autoPaused = paused;
+        if (paused) cancelBackoff();
+    }
+
+    /** Ожидание повтора больше не нужно — BACKOFF → IDLE. */
+    private void cancelBackoff() {
+        Link current = link.get();
+        if (current.phase == Phase.BACKOFF) transition(current, Link.IDLE);
+    }
+
+    /**
+     * Обновляет целевой хост/порт без перезапуска подключения. Используется при изменении настроек.
+     */
+    public void updateTarget(String host, int port) {
+        this.targetHost = host;
+        this.targetPort = port;
+    }
+
+    /** Время последнего heartbeat от железа (System.currentTimeMillis), 0 — ещё не было. */
+    public long lastHeartbeatMs() {
+        return lastHeartbeatMs;
+    }
+
+    /** Последнее подтверждённое железом состояние: (loco << 8) | state, 0 — подтверждений не было. */
+    public int lastAck() {
+        return lastAck;
+    }
+
+    /** Счётчики разбора входящих кадров по командам, см. {@link FrameDispatcher#stats()}. */
+    public String rxStats() {
+        return rxDispatcher.stats();
+    }
+
+    // ---- Framed protocol parsing (FrameDispatcher): обработчики по байту команды ----
+
+    /** Байты, прочитанные из сокета; открыт в пакете, чтобы тесты гнали кадры тем же путём. Поток чтения. */
+    void onRxBytes(byte[] buf, int off, int len) {
+        rxDecoder.feed(buf, off, len);
+    }
+
+    /** Состояние локомотива: cmd — номер локомотива, один байт данных — состояние. */
+    private boolean onStateFrame(int cmd, byte[] buf, int off, int len) {
+        if (len != 1) return false;
+        int state = buf[off] & 0xFF;     // 1..6
+        RxFrameListener listener = rxFrameListener;
+        if (listener != null) {
+            try { listener.onStateFrame(cmd, state); } catch (Throwable ignored) {}
+        } else if (onData != null) {
+            // Номер локомотива меньше 16 — две hex-цифры без форматирования
+            safeOnData("cmd=0x0" + cmd + " loco=" + cmd + " state=" + state + "\n");
+        }
+        return true;
+    }
+
+    private boolean onHeartbeatFrame(int cmd, byte[] buf, int off, int len) {
+        if (len != 0) return false;
+        lastHeartbeatMs = System.currentTimeMillis();
+        return true;
+    }
+
+    private boolean onAckFrame(int cmd, byte[] buf, int off, int len) {
+        if (len != 2) return false;
+        int loco = buf[off] & 0xFF;
+        int state = buf[off + 1] & 0xFF;
+        if (loco < ControlFrameCodec.LOCO_MIN || loco > ControlFrameCodec.LOCO_MAX) return false;
+        lastAck = (loco << 8) | state;
+        RxFrameListener listener = rxFrameListener;
+        if (listener != null) {
+            try { listener.onAckFrame(loco, state); } catch (Throwable ignored) {}
+        }
+        return true;
+    }
+
+    private boolean onTelemetryFrame(int cmd, byte[] buf, int off, int len) {
+        RxFrameListener listener = rxFrameListener;
+        if (listener != null) {
+            try { listener.onTelemetryFrame(buf, off, len); } catch (Throwable ignored) {}
+        } else if (onData != null) {
+            safeOnData("telemetry len=" + len + " data=" + ControlFrameCodec.toHex(buf, off, len) + "\n");
+        }
+        return true;
+    }
+
+    private boolean onSnapshotFrame(int cmd, byte[] buf, int off, int len) {
+        if (len != ControlFrameCodec.LOCO_MAX) return false;
+        for (int i = 0; i < len; i++) {
+            int state = buf[off + i] & 0xFF;
+            snapshotStates[i] = state >= ControlFrameCodec.STATE_MIN && state <= ControlFrameCodec.STATE_MAX ? state : 0;
+        }
+        // Снимок без запроса (или повторный ответ) получает версию на момент приёма
+        int version = snapshotVersion.getAndSet(0);
+        if (version == 0) version = StateBus.nextVersion();
+        SnapshotListener listener = snapshotListener;
+        if (listener != null) {
+            try { listener.onSnapshot(snapshotStates, version); } catch (Throwable ignored) {}
+        }
+        return true;
+    }
+
+    /** Пачка состояний: пары (loco, state) разбираются тем же обработчиком, что и одиночные кадры. */
+    private boolean onBatchFrame(int cmd, byte[] buf, int off, int len) {
+        if (len == 0 || (len & 1) != 0) return false;
+        for (int i = 0; i < len; i += 2) {
+            int loco = buf[off + i] & 0xFF;
+            if (loco < ControlFrameCodec.LOCO_MIN || loco > ControlFrameCodec.LOCO_MAX) return false;
+        }
+        for (int i = 0; i < len; i += 2) {
+            rxDispatcher.onFrame(buf[off + i] & 0xFF, buf, off + i + 1, 1);
+        }
+        return true;
+    }
+
+    /**
+     * Безопасный вызов consumer входящих строк. Любое исключение слушателя подавляется,
+     * чтобы не сорвать цикл чтения.
+     */
+    private void safeOnData(String s) {
+        try { if (onData != null) onData.accept(s); } catch (Throwable ignored) {}
+    }
+}
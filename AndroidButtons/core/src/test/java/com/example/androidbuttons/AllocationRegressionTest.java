@@ -0,0 +1,279 @@
+package com.example.androidbuttons;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Выделение памяти на горячих путях RX и TX в установившемся режиме. Каждый компонент прогоняет
+ * {@link #FRAMES} кадров после прогрева; выделенные байты берутся из
+ * {@code com.sun.management.ThreadMXBean#getThreadAllocatedBytes} для вызывающего потока и для
+ * потоков, на которых компонент доделывает работу (поток записи TcpManager). Кроме отдельных ступеней
+ * (декодер, таблица обработчиков, кодек) гоняются и настоящие пути TcpManager: байты из сокета через
+ * его декодер и обработчики до RxFrameListener со строкой консоли, и sendControl со связью и без.
+ * Тест падает с сообщением, в котором перечислены компоненты, превысившие свой потолок байт на
+ * кадр, с замеренными значениями. Без поддержки замера в JVM тест пропускается.
+ */
+public class AllocationRegressionTest {
+
+    private static final int FRAMES = 1_000_000;
+    private static final int WARMUP_FRAMES = 200_000;
+    /** Кадров в одном «чтении из сокета» для RX. */
+    private static final int FRAMES_PER_READ = 64;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    /** Накопленный ответ компонента: не даёт JIT выбросить прогон целиком. */
+    private static long sink;
+
+    /** Один прогон компонента; возвращает число обработанных кадров. */
+    private interface Workload {
+        int run(int frames);
+    }
+
+    private static final class Component {
+        final String name;
+        final double ceilingBytesPerFrame;
+        final Workload workload;
+        /** Потоки, выделения которых считаются вместе с вызывающим. */
+        final Thread[] helpers;
+
+        Component(String name, double ceilingBytesPerFrame, Workload workload, Thread... helpers) {
+            this.name = name;
+            this.ceilingBytesPerFrame = ceilingBytesPerFrame;
+            this.workload = workload;
+            this.helpers = helpers;
+        }
+    }
+
+    @BeforeClass
+    public static void requireAllocationCounter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("ThreadMXBean allocation counter unavailable",
+                bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void steadyStateHotPaths_stayUnderAllocationCeilings() throws Exception {
+        byte[] stream = buildStream(FRAMES_PER_READ);
+        int[] decoded = new int[1];
+        FrameDecoder cleanDecoder = new FrameDecoder((cmd, buf, off, len) -> decoded[0] += buf[off]);
+        FrameDecoder splitDecoder = new FrameDecoder((cmd, buf, off, len) -> decoded[0] += buf[off]);
+        byte[] txFrame = new byte[ControlFrameCodec.CONTROL_FRAME_LENGTH];
+
+        List<Component> components = new ArrayList<>();
+        // RX: целые чтения по FRAMES_PER_READ кадров
+        components.add(new Component("rx decoder (whole reads)", 0.0, frames -> {
+            int done = 0;
+            while (done < frames) {
+                cleanDecoder.feed(stream, 0, stream.length);
+                done += FRAMES_PER_READ;
+            }
+            return done;
+        }));
+        // RX: те же байты, нарезанные по 3 — кадры собираются из нескольких чтений
+        components.add(new Component("rx decoder (3-byte reads)", 0.0, frames -> {
+            int done = 0;
+            while (done < frames) {
+                for (int off = 0; off < stream.length; off += 3) {
+                    splitDecoder.feed(stream, off, Math.min(3, stream.length - off));
+                }
+                done += FRAMES_PER_READ;
+            }
+            return done;
+        }));
+        // RX: выбор обработчика по байту команды, включая счётчик неизвестных команд
+        FrameDispatcher dispatcher = new FrameDispatcher()
+                .registerRange(ControlFrameCodec.LOCO_MIN, ControlFrameCodec.LOCO_MAX,
+                        (cmd, buf, off, len) -> { decoded[0] += buf[off]; return len == 1; });
+        components.add(new Component("rx dispatch table", 0.0, frames -> {
+            for (int i = 0; i < frames; i++) {
+                dispatcher.onFrame(i & 0x0F, stream, 4, 1);
+            }
+            return frames;
+        }));
+        // RX целиком: поток чтения TcpManager отдаёт байты декодеру, обработчик кадра — слушателю,
+        // который, как MainActivity, пишет строку консоли в предвыделенный буфер
+        LogLineBuffer console = new LogLineBuffer(DataBuffer.LINE_BUFFER_CHARS);
+        StringBuilder drained = new StringBuilder(DataBuffer.LINE_BUFFER_CHARS);
+        TcpManager rxTcp = new TcpManager(() -> {}, () -> {}, data -> {}, error -> {}, status -> {});
+        rxTcp.setRxFrameListener(new TcpManager.RxFrameListener() {
+            @Override
+            public void onStateFrame(int loco, int state) {
+                synchronized (console) {
+                    console.text("[#TCP_RX#]Rx: loco").number(loco).text(" -> state").number(state).endLine();
+                }
+            }
+
+            @Override
+            public void onAckFrame(int loco, int state) {
+                decoded[0] += state;
+            }
+
+            @Override
+            public void onTelemetryFrame(byte[] buf, int off, int len) {
+                decoded[0] += len;
+            }
+        });
+        components.add(new Component("tcp rx -> listener + line", 0.0, frames -> {
+            int done = 0;
+            while (done < frames) {
+                rxTcp.onRxBytes(stream, 0, stream.length);
+                done += FRAMES_PER_READ;
+                // Слив, как у таймера DataBuffer, в заранее выделенный приёмник
+                drained.setLength(0);
+                console.drainTo(drained);
+            }
+            sink += drained.length();
+            return done;
+        }));
+        // TX без связи: команда ложится в outbox
+        TcpManager offlineTcp = new TcpManager(() -> {}, () -> {}, data -> {}, error -> {}, status -> {});
+        components.add(new Component("tcp sendControl (outbox)", 0.0, frames -> {
+            for (int i = 0; i < frames; i++) {
+                offlineTcp.sendControl(1 + (i & 7), 1 + i % 6);
+            }
+            sink += offlineTcp.outboxPending();
+            return frames;
+        }));
+        // TX: кодирование, которое поток записи TcpManager выполняет на каждую sendControl
+        components.add(new Component("tx encodeControlFrame", 0.0, frames -> {
+            long acc = 0;
+            for (int i = 0; i < frames; i++) {
+                acc += ControlFrameCodec.encodeControlFrame(1 + (i & 7), 1 + i % 6, txFrame, 0);
+                acc += txFrame[5];
+            }
+            sink += acc;
+            return frames;
+        }));
+        // Выделяющий вариант оставлен для совместимости: не больше одного 6-байтового массива на кадр
+        components.add(new Component("tx buildControlFrame", 32.0, frames -> {
+            long acc = 0;
+            for (int i = 0; i < frames; i++) {
+                acc += ControlFrameCodec.buildControlFrame(1 + (i & 7), 1 + i % 6)[5];
+            }
+            sink += acc;
+            return frames;
+        }));
+
+        // TX со связью: loopback-сервер вычитывает всё, что пишет поток записи TcpManager. Замер —
+        // поток вызывающего (конфлатора в приложении) вместе с потоком записи, который кодирует и
+        // пишет кадры в сокет
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        TcpManager txTcp = new TcpManager(() -> {}, () -> {}, data -> {}, error -> {}, status -> {});
+        Socket peer = null;
+        try {
+            server.setSoTimeout(5000);
+            txTcp.connect(server.getInetAddress().getHostAddress(), server.getLocalPort());
+            peer = server.accept();
+            startDraining(peer.getInputStream());
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!txTcp.isConnected() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+            assertTrue(txTcp.isConnected());
+            // Каждая команда дожидается своей записи в сокет: иначе поток записи сливал бы сотни команд
+            // за проход, и выделение на запись делилось бы на них. Так медленнее — кадров меньше.
+            // Сокет JDK изредка выделяет на медленном пути записи (сотни байт на прогон): потолок на
+            // порядки ниже одного объекта на кадр, но выше этого шума
+            components.add(new Component("tcp sendControl (connected)", 0.01, frames -> {
+                int paced = frames / 10;
+                for (int i = 0; i < paced; i++) {
+                    long flushes = txTcp.txFlushes();
+                    txTcp.sendControl(1 + (i & 7), 1 + i % 6);
+                    while (txTcp.txFlushes() == flushes) Thread.onSpinWait();
+                }
+                return paced;
+            }, txTcp.writerThread()));
+            runComponents(components);
+        } finally {
+            txTcp.close();
+            rxTcp.close();
+            offlineTcp.close();
+            if (peer != null) peer.close();
+            server.close();
+        }
+        assertTrue(decoded[0] != 0 || sink != 0);
+    }
+
+    private static void runComponents(List<Component> components) {
+        for (Component c : components) {
+            c.workload.run(WARMUP_FRAMES);
+        }
+
+        long overhead = measureOverhead();
+        List<String> regressions = new ArrayList<>();
+        for (Component c : components) {
+            long before = allocatedBytes(c);
+            int frames = c.workload.run(FRAMES);
+            long allocated = Math.max(0L, allocatedBytes(c) - before - overhead);
+            double perFrame = (double) allocated / frames;
+            // Нулевой потолок допускает лишь разовый шум (< 1 байта на 10 000 кадров)
+            double limit = c.ceilingBytesPerFrame > 0 ? c.ceilingBytesPerFrame : 1e-4;
+            if (perFrame > limit) {
+                regressions.add(String.format(Locale.US, "%s: %.4f bytes/frame > ceiling %.2f (%d bytes over %d frames)",
+                        c.name, perFrame, c.ceilingBytesPerFrame, allocated, frames));
+            }
+        }
+        assertTrue("allocation regressions: " + regressions, regressions.isEmpty());
+    }
+
+    /** Байты, выделенные вызывающим потоком и вспомогательными потоками компонента. */
+    private static long allocatedBytes(Component c) {
+        long total = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (Thread helper : c.helpers) {
+            long bytes = threads.getThreadAllocatedBytes(helper.getId());
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    /** Вычитывает сокет на отдельном потоке, чтобы запись TcpManager не упиралась в окно TCP. */
+    private static void startDraining(InputStream in) {
+        Thread t = new Thread(() -> {
+            byte[] buf = new byte[8192];
+            try {
+                while (in.read(buf) != -1) {
+                    // данные не нужны
+                }
+            } catch (java.io.IOException ignored) {
+                // сокет закрыт в конце теста
+            }
+        }, "alloc-test-peer");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Стоимость самого замера (пара вызовов getThreadAllocatedBytes). */
+    private static long measureOverhead() {
+        long tid = Thread.currentThread().getId();
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 16; i++) {
+            long before = threads.getThreadAllocatedBytes(tid);
+            long after = threads.getThreadAllocatedBytes(tid);
+            min = Math.min(min, after - before);
+        }
+        return min;
+    }
+
+    private static byte[] buildStream(int frames) {
+        byte[] stream = new byte[frames * ControlFrameCodec.CONTROL_FRAME_LENGTH];
+        for (int i = 0; i < frames; i++) {
+            ControlFrameCodec.encodeControlFrame(1 + (i & 7), 1 + i % 6, stream,
+                    i * ControlFrameCodec.CONTROL_FRAME_LENGTH);
+        }
+        return stream;
+    }
+}
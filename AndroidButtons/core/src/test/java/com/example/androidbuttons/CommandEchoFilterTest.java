@@ -0,0 +1,88 @@
+package com.example.androidbuttons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Версии RX относительно команд: запоздавшее эхо старого состояния, пришедшее после касания, не
+ * должно получить более новую версию и перерисовать полосу назад, а изменение железа после ACK
+ * команды принимается.
+ */
+public class CommandEchoFilterTest {
+
+    private static final int LOCO = 4;
+
+    @Test
+    public void delayedOldEcho_afterTap_isDropped() {
+        CommandEchoFilter filter = new CommandEchoFilter();
+        StateBus.publishLocoState(LOCO, 2, filter.versionForRx(LOCO, 2));
+
+        // Касание: состояние 5 принято StateBus, команда ждёт эха
+        int tapVersion = StateBus.nextVersion();
+        assertTrue(StateBus.publishLocoState(LOCO, 5, tapVersion));
+        filter.onCommand(LOCO, 5, tapVersion);
+
+        // Кадр со старым состоянием, отправленный железом до команды
+        assertEquals(0, filter.versionForRx(LOCO, 2));
+        assertEquals(5, StateBus.getLocoState(LOCO));
+        assertEquals(1, filter.staleDropped());
+
+        // Эхо команды получает её версию и ничего не меняет
+        int echoVersion = filter.versionForRx(LOCO, 5);
+        assertEquals(tapVersion, echoVersion);
+        assertFalse(StateBus.publishLocoState(LOCO, 5, echoVersion));
+
+        // После эха железо снова источник истины: изменение с пульта принимается
+        int external = filter.versionForRx(LOCO, 3);
+        assertTrue(external != 0);
+        assertTrue(StateBus.publishLocoState(LOCO, 3, external));
+        assertEquals(3, StateBus.getLocoState(LOCO));
+    }
+
+    @Test
+    public void ack_endsStaleWindow_soLaterOverrideIsAccepted() {
+        CommandEchoFilter filter = new CommandEchoFilter();
+        int tapVersion = StateBus.nextVersion();
+        assertTrue(StateBus.publishLocoState(LOCO, 4, tapVersion));
+        filter.onCommand(LOCO, 4, tapVersion);
+
+        // Кадр до ACK — старый, отбрасывается и виден как ожидающий команду
+        assertEquals(0, filter.versionForRx(LOCO, 2));
+        assertEquals(4, filter.pendingState(LOCO));
+
+        // ACK прежней команды ожидание не снимает
+        filter.onAck(LOCO, 3);
+        assertEquals(0, filter.versionForRx(LOCO, 2));
+
+        // ACK этой команды: дальше железо сообщает то, что есть после неё, — например, красный
+        filter.onAck(LOCO, 4);
+        assertEquals(0, filter.pendingState(LOCO));
+        int override = filter.versionForRx(LOCO, 1);
+        assertTrue(override - tapVersion > 0);
+        assertTrue(StateBus.publishLocoState(LOCO, 1, override));
+        assertEquals(1, StateBus.getLocoState(LOCO));
+        assertEquals(2, filter.staleDropped());
+    }
+
+    @Test
+    public void missingEcho_expiresAndRxIsAcceptedAgain() throws Exception {
+        CommandEchoFilter filter = new CommandEchoFilter(10);
+        int tapVersion = StateBus.nextVersion();
+        filter.onCommand(LOCO, 1, tapVersion);
+        assertEquals(0, filter.versionForRx(LOCO, 6));
+
+        Thread.sleep(30);
+        int version = filter.versionForRx(LOCO, 6);
+        assertTrue(version - tapVersion > 0);
+    }
+
+    @Test
+    public void otherLocos_areNotAffected() {
+        CommandEchoFilter filter = new CommandEchoFilter();
+        filter.onCommand(LOCO, 5, StateBus.nextVersion());
+        assertTrue(filter.versionForRx(LOCO + 1, 2) != 0);
+    }
+}
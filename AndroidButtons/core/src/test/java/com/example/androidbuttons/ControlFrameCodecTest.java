@@ -0,0 +1,87 @@
+package com.example.androidbuttons;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Кадры протокола на обычной JVM: сборка кадра управления, потоковый разбор с мусором и кадрами,
+ * разрезанными между чтениями, разбор полей строк RX.
+ */
+public class ControlFrameCodecTest {
+
+    @Test
+    public void controlFrame_hasHeaderPayloadAndCrc() {
+        byte[] frame = ControlFrameCodec.buildControlFrame(3, 5);
+        assertEquals(6, frame.length);
+        assertEquals(0x7E, frame[0] & 0xFF);
+        assertEquals(3, frame[1]);
+        assertEquals(0, frame[2]);
+        assertEquals(1, frame[3]);
+        assertEquals(5, frame[4]);
+        assertEquals(ControlFrameCodec.crc8(frame, 1, 4), frame[5]);
+    }
+
+    @Test
+    public void controlFrame_clampsLocoAndState() {
+        assertArrayEquals(ControlFrameCodec.buildControlFrame(8, 6), ControlFrameCodec.buildControlFrame(42, 99));
+        assertArrayEquals(ControlFrameCodec.buildControlFrame(1, 1), ControlFrameCodec.buildControlFrame(0, -3));
+    }
+
+    @Test
+    public void encodeControlFrame_matchesBuiltFrameAtOffset() {
+        byte[] dst = new byte[2 + ControlFrameCodec.CONTROL_FRAME_LENGTH];
+        int n = ControlFrameCodec.encodeControlFrame(4, 2, dst, 2);
+        assertEquals(ControlFrameCodec.CONTROL_FRAME_LENGTH, n);
+        assertArrayEquals(ControlFrameCodec.buildControlFrame(4, 2),
+                java.util.Arrays.copyOfRange(dst, 2, dst.length));
+    }
+
+    @Test
+    public void decoder_skipsGarbageAndBadCrc_andJoinsSplitFrames() {
+        List<String> frames = new ArrayList<>();
+        FrameDecoder decoder = new FrameDecoder((cmd, buf, off, len) ->
+                frames.add(cmd + ":" + ControlFrameCodec.toHex(buf, off, len)));
+
+        byte[] good = ControlFrameCodec.buildControlFrame(2, 4);
+        byte[] bad = ControlFrameCodec.buildControlFrame(7, 1);
+        bad[bad.length - 1] ^= 0x55;
+        byte[] second = ControlFrameCodec.buildControlFrame(5, 3);
+
+        byte[] stream = concat(new byte[] { 0x00, 0x11 }, good, bad, second);
+        int split = stream.length - 2;
+        decoder.feed(stream, 0, split);
+        assertEquals(1, frames.size());
+        decoder.feed(stream, split, stream.length - split);
+
+        assertEquals(2, frames.size());
+        assertEquals("2:04", frames.get(0));
+        assertEquals("5:03", frames.get(1));
+        assertEquals(0, decoder.pending());
+    }
+
+    @Test
+    public void parseDecimalField_readsDigitsAfterToken() {
+        String line = "cmd=0x03 loco=3 state=12";
+        assertEquals(3, ControlFrameCodec.parseDecimalField(line, "loco="));
+        assertEquals(12, ControlFrameCodec.parseDecimalField(line, "state="));
+        assertEquals(-1, ControlFrameCodec.parseDecimalField(line, "speed="));
+        assertEquals(-1, ControlFrameCodec.parseDecimalField("state=x", "state="));
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int size = 0;
+        for (byte[] p : parts) size += p.length;
+        byte[] out = new byte[size];
+        int pos = 0;
+        for (byte[] p : parts) {
+            System.arraycopy(p, 0, out, pos, p.length);
+            pos += p.length;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.androidbuttons;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Таблица обработчиков по байту команды: выбор обработчика, подсчёт неизвестных команд и
+ * отвергнутых кадров, разбор кадра-пачки через ту же таблицу.
+ */
+public class FrameDispatcherTest {
+
+    @Test
+    public void dispatch_routesByCommandAndCountsUnknown() {
+        List<String> seen = new ArrayList<>();
+        FrameDispatcher dispatcher = new FrameDispatcher()
+                .registerRange(1, 8, (cmd, buf, off, len) -> {
+                    if (len != 1) return false;
+                    seen.add("state " + cmd + ":" + buf[off]);
+                    return true;
+                })
+                .register(ControlFrameCodec.CMD_HEARTBEAT, (cmd, buf, off, len) -> seen.add("heartbeat"));
+        FrameDecoder decoder = new FrameDecoder(dispatcher);
+
+        byte[] stream = concat(
+                frame(3, 5),
+                frame(ControlFrameCodec.CMD_HEARTBEAT),
+                frame(0x5A, 1, 2, 3),
+                frame(0x5A),
+                frame(2, 1, 1));
+        decoder.feed(stream, 0, stream.length);
+
+        assertEquals(2, seen.size());
+        assertEquals("state 3:5", seen.get(0));
+        assertEquals("heartbeat", seen.get(1));
+        assertEquals(2, dispatcher.unknown(0x5A));
+        assertEquals(2, dispatcher.unknownTotal());
+        assertEquals(1, dispatcher.rejected(2));
+        assertEquals(1, dispatcher.handled(3));
+        assertTrue(dispatcher.stats(), dispatcher.stats().endsWith("unknown=2 [0x5A×2]"));
+    }
+
+    @Test
+    public void batch_redispatchesPairsThroughStateHandler() {
+        List<String> seen = new ArrayList<>();
+        FrameDispatcher dispatcher = new FrameDispatcher();
+        dispatcher.registerRange(1, 8, (cmd, buf, off, len) -> seen.add(cmd + "->" + buf[off]))
+                .register(ControlFrameCodec.CMD_BATCH, (cmd, buf, off, len) -> {
+                    if ((len & 1) != 0) return false;
+                    for (int i = 0; i < len; i += 2) dispatcher.onFrame(buf[off + i], buf, off + i + 1, 1);
+                    return true;
+                });
+
+        byte[] batch = frame(ControlFrameCodec.CMD_BATCH, 1, 2, 4, 6, 8, 3);
+        new FrameDecoder(dispatcher).feed(batch, 0, batch.length);
+
+        assertEquals(3, seen.size());
+        assertEquals("1->2", seen.get(0));
+        assertEquals("4->6", seen.get(1));
+        assertEquals("8->3", seen.get(2));
+        assertEquals(1, dispatcher.handled(ControlFrameCodec.CMD_BATCH));
+    }
+
+    /** Кадр протокола с произвольной командой и данными. */
+    private static byte[] frame(int cmd, int... data) {
+        byte[] f = new byte[ControlFrameCodec.OVERHEAD + data.length];
+        f[0] = ControlFrameCodec.START;
+        f[1] = (byte) cmd;
+        f[2] = (byte) (data.length >> 8);
+        f[3] = (byte) data.length;
+        for (int i = 0; i < data.length; i++) f[4 + i] = (byte) data[i];
+        f[f.length - 1] = ControlFrameCodec.crc8(f, 1, 3 + data.length);
+        return f;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int total = 0;
+        for (byte[] p : parts) total += p.length;
+        byte[] out = new byte[total];
+        int pos = 0;
+        for (byte[] p : parts) {
+            System.arraycopy(p, 0, out, pos, p.length);
+            pos += p.length;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.androidbuttons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Буфер строк консоли: числа пишутся без форматирования, слив отдаёт только завершённые строки, а
+ * не поместившаяся строка отбрасывается целиком.
+ */
+public class LogLineBufferTest {
+
+    @Test
+    public void lines_areWrittenAndDrainedInOrder() {
+        LogLineBuffer log = new LogLineBuffer(256);
+        log.text("Rx: loco").number(3).text(" -> state").number(4).endLine();
+        log.number(0).text(" ").number(-17).text(" ").number(Integer.MIN_VALUE).endLine();
+        StringBuilder sb = new StringBuilder();
+        int n = log.drainTo(sb);
+        assertEquals("Rx: loco3 -> state4\n0 -17 " + Integer.MIN_VALUE + "\n", sb.toString());
+        assertEquals(sb.length(), n);
+        assertTrue(log.isEmpty());
+        assertEquals(0, log.drainTo(sb));
+    }
+
+    @Test
+    public void overflowingLine_isDroppedWhole() {
+        LogLineBuffer log = new LogLineBuffer(64);
+        log.text("0123456789012345678901234567890123456789").endLine();
+        log.text("01234567890123456789012345").number(12345).endLine();
+        log.text("ok").endLine();
+        StringBuilder sb = new StringBuilder();
+        log.drainTo(sb);
+        assertEquals("0123456789012345678901234567890123456789\nok\n", sb.toString());
+        assertEquals(1, log.droppedLines());
+
+        // После слива место снова есть
+        sb.setLength(0);
+        log.text("01234567890123456789012345").number(12345).endLine();
+        log.drainTo(sb);
+        assertEquals("0123456789012345678901234512345\n", sb.toString());
+    }
+}
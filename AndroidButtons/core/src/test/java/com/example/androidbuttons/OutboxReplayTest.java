@@ -0,0 +1,108 @@
+package com.example.androidbuttons;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Outbox TcpManager: команды, отданные без связи, хранятся по последней на локомотив и уходят одной
+ * записью перед запросом снимка; устаревшие и вытесненные считаются сброшенными.
+ */
+public class OutboxReplayTest {
+
+    private ServerSocket server;
+    private TcpManager tcp;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        server.setSoTimeout(5000);
+        tcp = new TcpManager(() -> {}, () -> {}, data -> {}, error -> {}, status -> {});
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        tcp.close();
+        server.close();
+    }
+
+    @Test
+    public void disconnectedCommands_replayLatestPerLocoBeforeSnapshotRequest() throws Exception {
+        tcp.sendControl(1, 2);
+        tcp.sendControl(1, 3);
+        tcp.sendControl(2, 4);
+        assertEquals(2, tcp.outboxPending());
+        assertEquals(1, tcp.outboxDropped());
+
+        tcp.connect(server.getInetAddress().getHostAddress(), server.getLocalPort());
+        try (Socket peer = server.accept()) {
+            peer.setSoTimeout(5000);
+            byte[] received = new byte[2 * ControlFrameCodec.CONTROL_FRAME_LENGTH + ControlFrameCodec.OVERHEAD];
+            new DataInputStream(peer.getInputStream()).readFully(received);
+
+            byte[] expected = new byte[received.length];
+            int off = ControlFrameCodec.encodeControlFrame(1, 3, expected, 0);
+            off += ControlFrameCodec.encodeControlFrame(2, 4, expected, off);
+            ControlFrameCodec.encodeEmptyFrame(ControlFrameCodec.CMD_SNAPSHOT_REQUEST, expected, off);
+            assertArrayEquals(expected, received);
+
+            // Счётчик обновляется после возврата из записи — байты могли дойти раньше
+            long deadline = System.currentTimeMillis() + 5000;
+            while (tcp.outboxReplayed() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+            assertEquals(0, tcp.outboxPending());
+            assertEquals(2, tcp.outboxReplayed());
+            assertEquals(1, tcp.outboxDropped());
+        }
+    }
+
+    @Test
+    public void outOfRangeCommands_areClampedNotLost() throws Exception {
+        tcp.sendControl(0, 0);
+        tcp.sendControl(12, 256);
+        assertEquals(2, tcp.outboxPending());
+
+        tcp.connect(server.getInetAddress().getHostAddress(), server.getLocalPort());
+        try (Socket peer = server.accept()) {
+            peer.setSoTimeout(5000);
+            byte[] received = new byte[2 * ControlFrameCodec.CONTROL_FRAME_LENGTH + ControlFrameCodec.OVERHEAD];
+            new DataInputStream(peer.getInputStream()).readFully(received);
+
+            // Как в ControlFrameCodec: номер и состояние приводятся к границам диапазона
+            byte[] expected = new byte[received.length];
+            int off = ControlFrameCodec.encodeControlFrame(ControlFrameCodec.LOCO_MIN, ControlFrameCodec.STATE_MIN, expected, 0);
+            off += ControlFrameCodec.encodeControlFrame(ControlFrameCodec.LOCO_MAX, ControlFrameCodec.STATE_MAX, expected, off);
+            ControlFrameCodec.encodeEmptyFrame(ControlFrameCodec.CMD_SNAPSHOT_REQUEST, expected, off);
+            assertArrayEquals(expected, received);
+        }
+    }
+
+    @Test
+    public void expiredCommands_areDroppedNotReplayed() throws Exception {
+        tcp.setOutboxTtlMs(10);
+        tcp.sendControl(3, 1);
+        Thread.sleep(50);
+
+        tcp.connect(server.getInetAddress().getHostAddress(), server.getLocalPort());
+        try (Socket peer = server.accept()) {
+            peer.setSoTimeout(5000);
+            byte[] received = new byte[ControlFrameCodec.OVERHEAD];
+            new DataInputStream(peer.getInputStream()).readFully(received);
+
+            byte[] expected = new byte[ControlFrameCodec.OVERHEAD];
+            ControlFrameCodec.encodeEmptyFrame(ControlFrameCodec.CMD_SNAPSHOT_REQUEST, expected, 0);
+            assertArrayEquals(expected, received);
+
+            assertEquals(0, tcp.outboxPending());
+            assertEquals(0, tcp.outboxReplayed());
+            assertEquals(1, tcp.outboxDropped());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.androidbuttons;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Синхронизация состояний при подключении: TcpManager сам отправляет запрос снимка, ответ
+ * разбирается в массив состояний, а StateBus применяет его одной версией, не затирая более
+ * новые изменения.
+ */
+public class SnapshotResyncTest {
+
+    private ServerSocket server;
+    private TcpManager tcp;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        server.setSoTimeout(5000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (tcp != null) tcp.close();
+        server.close();
+    }
+
+    @Test
+    public void connect_requestsSnapshotAndDeliversStates() throws Exception {
+        BlockingQueue<int[]> snapshots = new ArrayBlockingQueue<>(4);
+        tcp = new TcpManager(() -> {}, () -> {}, data -> {}, error -> {}, status -> {});
+        tcp.setSnapshotListener((states, version) -> snapshots.offer(states.clone()));
+        tcp.connect(server.getInetAddress().getHostAddress(), server.getLocalPort());
+
+        try (Socket peer = server.accept()) {
+            peer.setSoTimeout(5000);
+            byte[] request = new byte[ControlFrameCodec.OVERHEAD];
+            new DataInputStream(peer.getInputStream()).readFully(request);
+            byte[] expected = new byte[ControlFrameCodec.OVERHEAD];
+            ControlFrameCodec.encodeEmptyFrame(ControlFrameCodec.CMD_SNAPSHOT_REQUEST, expected, 0);
+            assertArrayEquals(expected, request);
+
+            OutputStream out = peer.getOutputStream();
+            out.write(snapshotFrame(1, 2, 3, 4, 5, 6, 0, 9));
+            out.flush();
+
+            int[] states = snapshots.poll(5, TimeUnit.SECONDS);
+            assertNotNull("snapshot not delivered", states);
+            // 0 и значения вне диапазона состояний приходят как «неизвестно»
+            assertArrayEquals(new int[] {1, 2, 3, 4, 5, 6, 0, 0}, states);
+        }
+    }
+
+    @Test
+    public void localPublish_betweenRequestAndReply_survivesSnapshot() throws Exception {
+        BlockingQueue<Integer> applied = new ArrayBlockingQueue<>(4);
+        tcp = new TcpManager(() -> {}, () -> {}, data -> {}, error -> {}, status -> {});
+        // Как MainActivity: снимок применяется с версией, которую TcpManager взял при запросе
+        tcp.setSnapshotListener((states, version) -> applied.offer(StateBus.publishSnapshot(states, version)));
+        tcp.connect(server.getInetAddress().getHostAddress(), server.getLocalPort());
+
+        try (Socket peer = server.accept()) {
+            peer.setSoTimeout(5000);
+            new DataInputStream(peer.getInputStream()).readFully(new byte[ControlFrameCodec.OVERHEAD]);
+
+            // Касание после отправки запроса, но до ответа: железо о нём ещё не знает
+            StateBus.publishLocoState(3, 5, StateBus.nextVersion());
+
+            OutputStream out = peer.getOutputStream();
+            out.write(snapshotFrame(2, 2, 1, 2, 2, 2, 2, 2));
+            out.flush();
+
+            Integer accepted = applied.poll(5, TimeUnit.SECONDS);
+            assertNotNull("snapshot not applied", accepted);
+            assertEquals(7, accepted.intValue());
+            assertEquals(5, StateBus.getLocoState(3));
+            assertEquals(2, StateBus.getLocoState(1));
+            assertEquals(2, StateBus.getLocoState(8));
+        }
+    }
+
+    @Test
+    public void publishSnapshot_appliesOneVersionAndKeepsNewerCells() {
+        List<String> delivered = new ArrayList<>();
+        StateBus.LocoStateListener listener = (loco, state) -> delivered.add(loco + "=" + state);
+        StateBus.registerLocoListener(0, listener);
+        try {
+            int snapshotVersion = StateBus.nextVersion();
+            // Кадр для локомотива 2 пришёл позже запроса снимка — снимок его не откатывает
+            StateBus.publishLocoState(2, 5, StateBus.nextVersion());
+            delivered.clear();
+
+            int accepted = StateBus.publishSnapshot(new int[] {3, 1, 0, 4, 0, 0, 0, 2}, snapshotVersion);
+
+            assertEquals(3, accepted);
+            assertEquals(3, StateBus.getLocoState(1));
+            assertEquals(5, StateBus.getLocoState(2));
+            assertEquals(4, StateBus.getLocoState(4));
+            assertEquals(2, StateBus.getLocoState(8));
+            assertEquals(List.of("1=3", "4=4", "8=2"), delivered);
+        } finally {
+            StateBus.unregisterLocoListener(listener);
+        }
+    }
+
+    private static byte[] snapshotFrame(int... states) {
+        byte[] f = new byte[ControlFrameCodec.OVERHEAD + states.length];
+        f[0] = ControlFrameCodec.START;
+        f[1] = (byte) ControlFrameCodec.CMD_SNAPSHOT;
+        f[2] = 0;
+        f[3] = (byte) states.length;
+        for (int i = 0; i < states.length; i++) f[4 + i] = (byte) states[i];
+        f[f.length - 1] = ControlFrameCodec.crc8(f, 1, 3 + states.length);
+        return f;
+    }
+}
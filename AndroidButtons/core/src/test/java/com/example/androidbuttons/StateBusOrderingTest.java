@@ -0,0 +1,78 @@
+package com.example.androidbuttons;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Порядок доставки при гонке публикаций: публикатор, чей CAS прошёл раньше, может уведомлять
+ * подписчиков позже победителя. Гонка воспроизводится детерминированно — первый синхронный
+ * слушатель публикует более новое состояние прямо из уведомления о старом.
+ */
+public class StateBusOrderingTest {
+
+    private static final int LOCO = 6;
+
+    @Test
+    public void lateNotifyFromOlderPublish_doesNotOverwriteNewerState() {
+        Queue<Runnable> mainQueue = new ArrayDeque<>();
+        List<Integer> latest = new ArrayList<>();
+        List<Integer> direct = new ArrayList<>();
+        StateBus.LocoStateListener racer = (loco, state) -> {
+            // Победитель гонки: более новое изменение публикуется и уведомляет всех раньше старого
+            if (state == 2) StateBus.publishLocoState(LOCO, 5, StateBus.nextVersion());
+        };
+        StateBus.LocoStateListener conflated = (loco, state) -> latest.add(state);
+        StateBus.LocoStateListener sync = (loco, state) -> direct.add(state);
+        StateBus.registerLocoListener(LOCO, racer);
+        StateBus.registerLocoListener(LOCO, conflated, mainQueue::add, StateBus.Conflation.LATEST);
+        StateBus.registerLocoListener(LOCO, sync);
+        try {
+            // Доставку начального состояния из регистрации выполняем и забываем
+            while (!mainQueue.isEmpty()) mainQueue.poll().run();
+            latest.clear();
+            direct.clear();
+
+            StateBus.publishLocoState(LOCO, 2, StateBus.nextVersion());
+            while (!mainQueue.isEmpty()) mainQueue.poll().run();
+
+            assertEquals(5, StateBus.getLocoState(LOCO));
+            assertEquals(List.of(5), latest);
+            // Синхронный слушатель получил новое состояние, а запоздавшее старое отброшено
+            assertEquals(List.of(5), direct);
+        } finally {
+            StateBus.unregisterLocoListener(racer);
+            StateBus.unregisterLocoListener(conflated);
+            StateBus.unregisterLocoListener(sync);
+        }
+    }
+
+    @Test
+    public void stripLatest_deliversSelectedLocoStateAtRunTime() {
+        Queue<Runnable> mainQueue = new ArrayDeque<>();
+        List<Integer> strip = new ArrayList<>();
+        StateBus.StripStateListener listener = strip::add;
+        int previous = AppState.selectedLoco.get();
+        StateBus.selectLoco(LOCO);
+        StateBus.registerStateListener(listener, mainQueue::add, StateBus.Conflation.LATEST);
+        try {
+            while (!mainQueue.isEmpty()) mainQueue.poll().run();
+            strip.clear();
+            int older = StateBus.nextVersion();
+            int newer = StateBus.nextVersion();
+            StateBus.publishLocoState(LOCO, 4, newer);
+            StateBus.publishLocoState(LOCO, 1, older); // устарело — отброшено CAS
+            StateBus.publishLocoState(LOCO, 3, StateBus.nextVersion());
+            while (!mainQueue.isEmpty()) mainQueue.poll().run();
+            assertEquals(List.of(3), strip);
+        } finally {
+            StateBus.unregisterStateListener(listener);
+            StateBus.selectLoco(previous);
+        }
+    }
+}
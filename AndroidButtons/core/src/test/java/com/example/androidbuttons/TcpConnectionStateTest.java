@@ -0,0 +1,144 @@
+package com.example.androidbuttons;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Переходы состояния соединения TcpManager на loopback-сервере: подключение, ручное отключение,
+ * разрыв со стороны железа при включённом автоподключении, рост задержки повтора и остановка
+ * менеджера.
+ */
+public class TcpConnectionStateTest {
+
+    private static final long WAIT_MS = 5000;
+
+    private ServerSocket server;
+    private TcpManager tcp;
+    private final AtomicInteger searchStarts = new AtomicInteger();
+    private final AtomicInteger searchStops = new AtomicInteger();
+    private int writersBefore;
+
+    @Before
+    public void setUp() throws Exception {
+        writersBefore = liveThreads("tcp-writer");
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        server.setSoTimeout((int) WAIT_MS);
+        tcp = new TcpManager(searchStarts::incrementAndGet, searchStops::incrementAndGet,
+                data -> {}, error -> {}, status -> {});
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        tcp.close();
+        server.close();
+    }
+
+    @Test
+    public void connectThenDisconnect_returnsToIdle() throws Exception {
+        assertEquals(TcpManager.Phase.IDLE, tcp.phase());
+        tcp.connect(host(), server.getLocalPort());
+        Socket peer = server.accept();
+        try {
+            awaitPhase(TcpManager.Phase.CONNECTED);
+            assertTrue(tcp.isConnected());
+            assertEquals(1, searchStarts.get());
+            assertEquals(1, searchStops.get());
+
+            // Повторный connect при установленном соединении ничего не меняет
+            tcp.connect(host(), server.getLocalPort());
+            assertEquals(TcpManager.Phase.CONNECTED, tcp.phase());
+
+            tcp.disconnect();
+            awaitPhase(TcpManager.Phase.IDLE);
+            assertFalse(tcp.isConnected());
+            assertEquals(1, searchStarts.get());
+        } finally {
+            peer.close();
+        }
+    }
+
+    @Test
+    public void peerClose_withAutoConnect_backsOffAndReconnects() throws Exception {
+        tcp.enableAutoConnect(host(), server.getLocalPort());
+        server.accept().close();
+        awaitPhase(TcpManager.Phase.BACKOFF);
+        assertFalse(tcp.isConnected());
+
+        Socket peer = server.accept();
+        try {
+            awaitPhase(TcpManager.Phase.CONNECTED);
+        } finally {
+            peer.close();
+        }
+    }
+
+    @Test
+    public void pauseAuto_cancelsBackoff() throws Exception {
+        tcp.enableAutoConnect(host(), server.getLocalPort());
+        server.accept().close();
+        awaitPhase(TcpManager.Phase.BACKOFF);
+
+        tcp.pauseAuto(true);
+        assertEquals(TcpManager.Phase.IDLE, tcp.phase());
+        assertEquals(searchStarts.get(), searchStops.get());
+    }
+
+    @Test
+    public void close_stopsWorkerThreadsAndRefusesReconnect() throws Exception {
+        tcp.enableAutoConnect(host(), server.getLocalPort());
+        Socket peer = server.accept();
+        try {
+            awaitPhase(TcpManager.Phase.CONNECTED);
+            assertEquals(1, liveThreads("tcp-writer") - writersBefore);
+
+            tcp.close();
+            awaitPhase(TcpManager.Phase.IDLE);
+            assertEquals(writersBefore, liveThreads("tcp-writer"));
+
+            tcp.connect(host(), server.getLocalPort());
+            tcp.enableAutoConnect(host(), server.getLocalPort());
+            assertEquals(TcpManager.Phase.IDLE, tcp.phase());
+        } finally {
+            peer.close();
+        }
+    }
+
+    @Test
+    public void backoffDelay_doublesUpToCap() {
+        assertEquals(1000L, TcpManager.backoffDelayMs(1));
+        assertEquals(2000L, TcpManager.backoffDelayMs(2));
+        assertEquals(4000L, TcpManager.backoffDelayMs(3));
+        assertEquals(8000L, TcpManager.backoffDelayMs(4));
+        assertEquals(8000L, TcpManager.backoffDelayMs(50));
+    }
+
+    private static int liveThreads(String name) {
+        int count = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(t.getName()) && t.isAlive()) count++;
+        }
+        return count;
+    }
+
+    private String host() {
+        return server.getInetAddress().getHostAddress();
+    }
+
+    private void awaitPhase(TcpManager.Phase expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (tcp.phase() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, tcp.phase());
+    }
+}
@@ -22,4 +22,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "AndroidButtons"
 include(":app")
+include(":core")
+include(":benchmarks")
 